@@ -0,0 +1,130 @@
+// bench/src/main/java/BenchFixtures.java
+import metrics.MetricsCollector;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Builds the objects the JMH benchmarks exercise.
+ *
+ * The simulation classes live in the default package, which named packages cannot import,
+ * and JMH refuses benchmark classes in the default package. So this class (same package as
+ * the simulation) hands the benchmarks plain JDK functional interfaces, which they look up
+ * once by reflection in their @Setup; the calls themselves are ordinary interface calls.
+ */
+public final class BenchFixtures {
+    private static final PrintStream NULL = new PrintStream(OutputStream.nullOutputStream());
+
+    private BenchFixtures() {}
+
+    /**
+     * {step, restart, shutdown} on one Simulation for the whole trial: step runs one
+     * Simulation.step(), restart re-initializes the run at step 0 (keeping its parallel
+     * workers) and shutdown stops those workers. I0 is at least 100, so the epidemic is
+     * still going after the steps a benchmark iteration takes. Mixing is "uniform" or
+     * "spatial" (SpatialMixing with weights 0.5,0.4,0.1).
+     */
+    public static Runnable[] simulationStep(int n, int k, int threads, String mixing) {
+        SimParams params = new SimParams(n, Math.min(n, Math.max(100, n / 1000)), 0.10, 0.05, k, Integer.MAX_VALUE, 42L);
+        ContactSampler sampler = "spatial".equals(mixing) ? BatchRunner.spatialMixing("0.5,0.4,0.1", n, 42L) : null;
+        Simulation sim = newSimulation(params, threads, sampler);
+        Runnable restart = () -> {
+            sim.setMetricsCollector(new MetricsCollector());
+            sim.initialize(params);
+        };
+        return new Runnable[] { sim::step, restart, sim::shutdown };
+    }
+
+    private static Simulation newSimulation(SimParams params, int threads, ContactSampler sampler) {
+        Simulation sim = new Simulation();
+        sim.setConsole(NULL);
+        sim.setParallelism(threads);
+        sim.setContactSampler(sampler);
+        sim.setMetricsCollector(new MetricsCollector());
+        sim.initialize(params);
+        return sim;
+    }
+
+    private static Population population(int n, double infectedFraction) {
+        Population pop = new Population(n, HealthState.S);
+        pop.seedInitialInfections((int) (n * infectedFraction), new Random(1));
+        return pop;
+    }
+
+    /** Population.count(state) on a population with the given infected fraction. */
+    public static IntSupplier populationCount(int n, double infectedFraction, String state) {
+        Population pop = population(n, infectedFraction);
+        HealthState s = HealthState.valueOf(state);
+        return () -> pop.count(s);
+    }
+
+    /** Population.getByState(state); returns the list size. */
+    public static IntSupplier populationGetByState(int n, double infectedFraction, String state) {
+        Population pop = population(n, infectedFraction);
+        HealthState s = HealthState.valueOf(state);
+        return () -> pop.getByState(s).size();
+    }
+
+    private static PackedPopulation packed(long n, double infectedFraction) {
+        PackedPopulation pop = PackedPopulation.allocate(n, 2, HealthState.S.ordinal());
+        pop.seedInfections((long) (n * infectedFraction), new SplittableRandom(1));
+        return pop;
+    }
+
+    /** PackedPopulation.count(state): word-at-a-time popcount over the packed states. */
+    public static LongSupplier packedCount(long n, double infectedFraction, String state) {
+        PackedPopulation pop = packed(n, infectedFraction);
+        HealthState s = HealthState.valueOf(state);
+        return () -> pop.count(s);
+    }
+
+    /**
+     * PackedPopulation.vaccinate(fraction) on one population built here: element 0
+     * vaccinates, element 1 undoes it (everyone in R back to S; the population has no
+     * other R) and belongs in an untimed per-invocation setup.
+     */
+    public static LongSupplier[] packedVaccinate(long n, double infectedFraction, double fraction) {
+        PackedPopulation pop = packed(n, infectedFraction);
+        SplittableRandom rng = new SplittableRandom(2);
+        int s = HealthState.S.ordinal(), r = HealthState.R.ordinal();
+        return new LongSupplier[] {
+            () -> pop.vaccinate(fraction, rng),
+            () -> pop.move(r, s, Long.MAX_VALUE, rng)
+        };
+    }
+
+    /** MetricsCollector.writeCsv of 'rows' recorded steps into a temp file. */
+    public static Callable<Object> metricsWriteCsv(int rows) throws IOException {
+        MetricsCollector mc = new MetricsCollector();
+        for (int t = 0; t < rows; t++) mc.record(t, 1_000_000 - t, t % 5000, t);
+        Path out = Files.createTempFile("bench-metrics", ".csv");
+        out.toFile().deleteOnExit();
+        return () -> {
+            mc.writeCsv(out);
+            return out;
+        };
+    }
+
+    /** Aggregator.summarizeOneRun over a temp run CSV with 'rows' steps. */
+    public static Callable<Object> summarizeOneRun(int rows) throws IOException {
+        MetricsCollector mc = new MetricsCollector();
+        for (int t = 0; t < rows; t++) mc.record(t, 100_000 - t, (int) (5000 * Math.sin(Math.PI * t / rows)), t);
+        Path csv = Files.createTempFile("bench-run", ".csv");
+        csv.toFile().deleteOnExit();
+        try {
+            mc.writeCsv(csv);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return () -> Aggregator.summarizeOneRun(csv, 100_000);
+    }
+}
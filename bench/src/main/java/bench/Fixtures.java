@@ -0,0 +1,26 @@
+package bench;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/** Reflective bridge to the default-package BenchFixtures (see its comment for why). */
+final class Fixtures {
+    private Fixtures() {}
+
+    @SuppressWarnings("unchecked")
+    static <T> T get(String factory, Object... args) {
+        try {
+            Class<?> c = Class.forName("BenchFixtures");
+            for (Method m : c.getMethods()) {
+                if (m.getName().equals(factory) && m.getParameterCount() == args.length) {
+                    return (T) m.invoke(null, args);
+                }
+            }
+            throw new IllegalArgumentException("no fixture " + factory + "/" + args.length);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException("fixture " + factory + " failed", e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("cannot load BenchFixtures", e);
+        }
+    }
+}
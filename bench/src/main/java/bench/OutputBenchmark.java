@@ -0,0 +1,36 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/** MetricsCollector.writeCsv and Aggregator.summarizeOneRun. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OutputBenchmark {
+    @Param({"200", "10000", "1000000"})
+    int rows;
+
+    private Callable<Object> writeCsv, summarize;
+
+    @Setup
+    public void setup() {
+        writeCsv = Fixtures.get("metricsWriteCsv", rows);
+        summarize = Fixtures.get("summarizeOneRun", rows);
+    }
+
+    @Benchmark
+    public Object metricsWriteCsv() throws Exception {
+        return writeCsv.call();
+    }
+
+    @Benchmark
+    public Object summarizeOneRun() throws Exception {
+        return summarize.call();
+    }
+}
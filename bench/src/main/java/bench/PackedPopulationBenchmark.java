@@ -0,0 +1,62 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/** PackedPopulation.count and vaccinate (off-heap, 2 bits per person). */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PackedPopulationBenchmark {
+    @Param({"100000", "10000000", "1000000000"})
+    long n;
+
+    @Param({"0.01", "0.2"})
+    double infected;
+
+    private LongSupplier countS, countI;
+
+    @Setup
+    public void setup() {
+        countS = Fixtures.get("packedCount", n, infected, "S");
+        countI = Fixtures.get("packedCount", n, infected, "I");
+    }
+
+    /** Population for vaccinate(), built once and reset before every call (untimed). */
+    @State(Scope.Thread)
+    public static class Vaccination {
+        LongSupplier vaccinate, undo;
+
+        @Setup
+        public void setup(PackedPopulationBenchmark b) {
+            LongSupplier[] ops = Fixtures.get("packedVaccinate", b.n, b.infected, 0.3);
+            vaccinate = ops[0];
+            undo = ops[1];
+        }
+
+        @Setup(Level.Invocation)
+        public void reset() {
+            undo.getAsLong();
+        }
+    }
+
+    @Benchmark
+    public long countS() {
+        return countS.getAsLong();
+    }
+
+    @Benchmark
+    public long countI() {
+        return countI.getAsLong();
+    }
+
+    @Benchmark
+    public long vaccinate(Vaccination v) {
+        return v.vaccinate.getAsLong();
+    }
+}
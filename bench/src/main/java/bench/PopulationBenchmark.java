@@ -0,0 +1,45 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/** Population.count and Population.getByState. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PopulationBenchmark {
+    @Param({"1000", "100000", "10000000"})
+    int n;
+
+    @Param({"0.01", "0.2"})
+    double infected;
+
+    private IntSupplier countS, countI, byStateI;
+
+    @Setup
+    public void setup() {
+        countS = Fixtures.get("populationCount", n, infected, "S");
+        countI = Fixtures.get("populationCount", n, infected, "I");
+        byStateI = Fixtures.get("populationGetByState", n, infected, "I");
+    }
+
+    @Benchmark
+    public int countS() {
+        return countS.getAsInt();
+    }
+
+    @Benchmark
+    public int countI() {
+        return countI.getAsInt();
+    }
+
+    @Benchmark
+    public int getByStateI() {
+        return byStateI.getAsInt();
+    }
+}
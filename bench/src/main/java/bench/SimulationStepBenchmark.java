@@ -0,0 +1,60 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simulation.step() across population sizes, contact rates and mixing models.
+ * Every iteration times the first STEPS steps of the run, restarted at step 0 in the
+ * untimed setup (the Simulation and its workers are built once per trial), so the score
+ * is milliseconds per STEPS steps.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, batchSize = SimulationStepBenchmark.STEPS)
+@Measurement(iterations = 10, batchSize = SimulationStepBenchmark.STEPS)
+@Fork(1)
+public class SimulationStepBenchmark {
+    static final int STEPS = 50;
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    int n;
+
+    @Param({"2", "5", "10"})
+    int k;
+
+    // 0 = classic single-threaded step; >0 = ParallelInfection with that many workers
+    @Param({"0"})
+    int threads;
+
+    // uniform = everyone mixes with everyone; spatial = SpatialMixing households on a grid
+    @Param({"uniform"})
+    String mixing;
+
+    private Runnable step, restart, shutdown;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Runnable[] f = Fixtures.get("simulationStep", n, k, threads, mixing);
+        step = f[0];
+        restart = f[1];
+        shutdown = f[2];
+    }
+
+    @Setup(Level.Iteration)
+    public void restart() {
+        restart.run();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        shutdown.run();
+    }
+
+    @Benchmark
+    public void step() {
+        step.run();
+    }
+}
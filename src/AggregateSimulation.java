@@ -0,0 +1,181 @@
+// src/AggregateSimulation.java
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Random;
+
+import metrics.MetricsCollector;
+import metrics.RunArchive;
+
+/**
+ * Count-based (chain-binomial) version of Simulation for well-mixed runs.
+ *
+ * Simulation's homogeneous mixing only depends on the S/I/R counts, so instead of
+ * creating agents each step draws:
+ *   newInfections ~ Binomial(S, 1 - (1 - beta/(N-1))^(I*kEff))
+ *   recoveries    ~ Binomial(I, gamma)
+ * Each susceptible has the same per-step infection probability as in the agent model
+ * (the Reed-Frost form), recoveries match exactly, and the cost per step is O(1)
+ * whatever N is. Scenario rules come from the same InterventionPlan as Simulation's
+ * (e.g. vaccination at t=0, quarantine above 5% prevalence). Good for screening
+ * parameters quickly.
+ */
+public class AggregateSimulation implements SimulationEngine {
+    private SimParams params;
+    private Random rng;
+    private int step;
+    private MetricsCollector metrics;
+    private long S, I, R;
+
+    private String scenarioFolder = "baseline";
+    private PrintStream console = System.out;
+    private boolean binaryOutput = false;
+    private boolean headless = false;
+    private LiveMetrics.Run live;
+    private String outputDir = "runs";
+
+    // scenario rules (same InterventionPlan as Simulation)
+    private List<Intervention> interventions;
+    private InterventionPlan plan;
+    private final Intervention.Host host = new Intervention.Host() {
+        @Override public int time() { return step; }
+        @Override public long count(HealthState s) { return s == HealthState.S ? S : s == HealthState.I ? I : R; }
+        @Override public long size() { return params.populationSize; }
+        @Override public void vaccinate(double fraction) { AggregateSimulation.this.vaccinate(fraction); }
+        @Override public String scenario() { return scenarioFolder; }
+        @Override public void log(String message) { console.println(message); }
+    };
+
+    public void setMetricsCollector(MetricsCollector metrics) {
+        this.metrics = metrics;
+    }
+
+    public void setScenarioFolder(String name) {
+        this.scenarioFolder = (name == null || name.isBlank()) ? "baseline" : name;
+    }
+
+    public String getScenarioFolder() { return this.scenarioFolder; }
+
+    public void setConsole(PrintStream console) {
+        this.console = (console == null) ? System.out : console;
+    }
+
+    public int getStep() { return step; }
+
+    public void setBinaryOutput(boolean binary) {
+        this.binaryOutput = binary;
+    }
+
+    public void setOutputDir(String dir) {
+        this.outputDir = (dir == null || dir.isBlank()) ? "runs" : dir;
+    }
+
+    public void setInterventions(List<Intervention> rules) {
+        this.interventions = rules;
+    }
+
+    public void setLiveMetrics(LiveMetrics.Run live) {
+        this.live = live;
+    }
+
+    public void setHeadless(boolean headless) {
+        this.headless = headless;
+        if (headless) this.console = new PrintStream(OutputStream.nullOutputStream());
+    }
+
+    public void initialize(SimParams params) {
+        this.params = params;
+        this.rng = new Random(params.seed);
+        this.step = 0;
+        this.I = Math.min(Math.max(params.initialInfected, 0), params.populationSize);
+        this.S = params.populationSize - I;
+        this.R = 0;
+
+        if (this.metrics == null) {
+            this.metrics = new MetricsCollector();
+        }
+
+        // --- scenario-specific setup, same rules as Simulation ---
+        this.plan = (interventions != null) ? new InterventionPlan(interventions)
+                                            : InterventionPlan.forScenario(scenarioFolder);
+        plan.beforeStep(host);
+
+        console.printf(
+            "Initialized (aggregate): N=%d, I0=%d, beta=%.3f, gamma=%.3f, k=%d, maxSteps=%d, scenario=%s%n",
+            params.populationSize, params.initialInfected, params.beta, params.gamma,
+            params.contactsPerStep, params.maxSteps, scenarioFolder
+        );
+
+        printCounts();
+        metrics.record(step, (int) S, (int) I, (int) R);
+        if (live != null) live.step(step, S, I, R);
+    }
+
+    public void step() {
+        int n = params.populationSize;
+        plan.beforeStep(host);
+        int kEff = plan.contacts(host, params.contactsPerStep);
+
+        // probability a given susceptible is hit by at least one of the I*kEff contacts
+        long newInf = 0;
+        if (n > 1 && S > 0 && I > 0) {
+            double perContact = params.beta / (n - 1);
+            double pInf = -Math.expm1((double) I * kEff * Math.log1p(-perContact));
+            newInf = Binomial.sample(rng, S, pInf);
+        }
+        long newRec = Binomial.sample(rng, I, params.gamma);
+
+        S -= newInf;
+        I += newInf - newRec;
+        R += newRec;
+        step++;
+
+        printCounts();
+        metrics.record(step, (int) S, (int) I, (int) R);
+        if (live != null) live.step(step, S, I, R);
+    }
+
+    public void run() {
+        while (step < params.maxSteps && I > 0) {
+            step();
+        }
+        console.println("Simulation finished.");
+        if (live != null) live.finished();
+
+        try {
+            if (binaryOutput) {
+                Path dir = Paths.get(outputDir, scenarioFolder);
+                RunArchive.append(dir, params.seed, metrics);
+                console.println("Wrote metrics to: " + dir.resolve(RunArchive.DATA_FILE) + " (seed " + params.seed + ")");
+                return;
+            }
+            Path out = Paths.get(outputDir, scenarioFolder, "run_seed" + params.seed + ".csv");
+            Files.createDirectories(out.getParent());
+            metrics.writeCsv(out);
+            console.println("Wrote metrics to: " + out);
+        } catch (IOException e) {
+            System.err.println("Failed to write CSV: " + e.getMessage());
+        }
+    }
+
+    // same rounding as Simulation.vaccinate: round(fraction * #susceptible)
+    private void vaccinate(double fraction) {
+        if (fraction <= 0 || S == 0) return;
+        long v = Math.min(Math.round(fraction * S), S);
+        S -= v;
+        R += v;
+    }
+
+    private void printCounts() {
+        if (headless) return;
+        if (step == 0) {
+            console.printf("%-6s %-10s %-10s %-10s%n", "Step", "Suscept.", "Infected", "Recovered");
+            console.println("--------------------------------------------");
+        }
+        console.printf("%-6d %-10d %-10d %-10d%n", step, S, I, R);
+    }
+}
@@ -4,64 +4,94 @@
 import java.io.*;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.stream.Collectors;
 
+import metrics.RunArchive;
+
+/**
+ * Summarizes every run of a scenario in one streaming pass.
+ * Run files are read and summarized on a thread pool, but results are consumed in file
+ * order through a bounded window, so the summary CSV, the Welford statistics and the
+ * per-step ensemble curve are deterministic and memory does not grow with the run count.
+ */
 public class Aggregator {
 
-    static class Row { int step, S, I, R; Row(int a,int b,int c,int d){step=a;S=b;I=c;R=d;} }
+    static final String[] METRICS = { "peakI", "timeToPeak", "finalR", "duration", "attackRate" };
+
+    /** One run's summary numbers (same order as METRICS) plus its I series for the ensemble curve. */
+    static class RunResult {
+        String name;
+        int peakI = -1, timeToPeak = -1, duration = 0, finalR = 0;
+        int[] infected = new int[256]; // I by step
+        int length;                    // steps seen (last step + 1)
+        double attackRate;
+
+        void add(int step, int I, int R) {
+            // peak I and time-to-peak
+            if (I > peakI) { peakI = I; timeToPeak = step; }
+            // duration = last step with I>0 (if none, duration=0)
+            if (I > 0) duration = step;
+            // final R = last row’s R (or 0)
+            finalR = R;
+            if (step >= 0) {
+                if (step >= infected.length) infected = Arrays.copyOf(infected, Math.max(step + 1, infected.length * 2));
+                infected[step] = I;
+                length = Math.max(length, step + 1);
+            }
+        }
+
+        RunResult finish(String name, int N) {
+            this.name = name;
+            this.attackRate = N == 0 ? 0.0 : (double)finalR / (double)N;
+            return this;
+        }
+
+        double metric(int m) {
+            switch (m) {
+                case 0: return peakI;
+                case 1: return timeToPeak;
+                case 2: return finalR;
+                case 3: return duration;
+                default: return attackRate;
+            }
+        }
+    }
 
-    static List<Row> readRunCsv(Path path) throws IOException {
-        List<Row> rows = new ArrayList<>();
+    static RunResult readCsvRun(Path path, int N) throws IOException {
+        RunResult r = new RunResult();
         try (BufferedReader br = Files.newBufferedReader(path)) {
             String line = br.readLine(); // header
             while ((line = br.readLine()) != null) {
                 String[] t = line.trim().split(",");
                 if (t.length < 4) continue;
-                int step = Integer.parseInt(t[0]);
-                int S = Integer.parseInt(t[1]);
-                int I = Integer.parseInt(t[2]);
-                int R = Integer.parseInt(t[3]);
-                rows.add(new Row(step,S,I,R));
+                r.add(Integer.parseInt(t[0]), Integer.parseInt(t[2]), Integer.parseInt(t[3]));
             }
         }
-        return rows;
+        return r.finish(path.getFileName().toString().replace(".csv",""), N);
     }
 
-    static Map<String, Double> summarizeOneRun(Path csv, int N) throws IOException {
-        List<Row> rows = readRunCsv(csv);
-        // peak I and time-to-peak
-        int peakI = -1, timeToPeak = -1;
-        for (Row r : rows) {
-            if (r.I > peakI) { peakI = r.I; timeToPeak = r.step; }
+    /** Same as readCsvRun, decoded straight from a memory-mapped archive record. */
+    static RunResult readArchiveRun(RunArchive.Reader archive, long seed, int N) {
+        RunResult r = new RunResult();
+        RunArchive.Cursor c = archive.open(seed);
+        while (c.next()) {
+            int[] v = c.values();
+            r.add(v[0], v[2], v[3]);
         }
-        // duration = last step with I>0 (if none, duration=0)
-        int duration = 0;
-        for (Row r : rows) if (r.I > 0) duration = r.step;
-
-        // final R = last row’s R (or 0)
-        int finalR = rows.isEmpty() ? 0 : rows.get(rows.size()-1).R;
+        return r.finish("run_seed" + seed, N);
+    }
 
+    static Map<String, Double> summarizeOneRun(Path csv, int N) throws IOException {
+        RunResult r = readCsvRun(csv, N);
         Map<String, Double> out = new LinkedHashMap<>();
-        out.put("peakI", (double)peakI);
-        out.put("timeToPeak", (double)timeToPeak);
-        out.put("finalR", (double)finalR);
-        out.put("duration", (double)duration);
-        out.put("attackRate", N == 0 ? 0.0 : (double)finalR / (double)N);
+        for (int m = 0; m < METRICS.length; m++) out.put(METRICS[m], r.metric(m));
         return out;
     }
 
-    static void writeSummaryCsv(Path out, List<Map<String, Double>> rows, List<String> runNames) throws IOException {
-        Files.createDirectories(out.getParent());
-        try (BufferedWriter w = Files.newBufferedWriter(out)) {
-            w.write("run,peakI,timeToPeak,finalR,duration,attackRate\n");
-            for (int i=0;i<rows.size();i++) {
-                Map<String, Double> m = rows.get(i);
-                String name = runNames.get(i);
-                w.write(String.format(Locale.US, "%s,%.0f,%.0f,%.0f,%.0f,%.4f\n",
-                    name, m.get("peakI"), m.get("timeToPeak"), m.get("finalR"),
-                    m.get("duration"), m.get("attackRate")));
-            }
-        }
+    static void writeSummaryRow(Writer w, RunResult r) throws IOException {
+        w.write(String.format(Locale.US, "%s,%d,%d,%d,%d,%.4f\n",
+            r.name, r.peakI, r.timeToPeak, r.finalR, r.duration, r.attackRate));
     }
 
     static void aggregateScenario(String scenario, int N) throws IOException {
@@ -70,42 +100,82 @@ public class Aggregator {
             System.err.println("No folder: " + dir.toString());
             return;
         }
-        List<Path> runFiles = Files.list(dir)
-            .filter(p -> p.getFileName().toString().startsWith("run_seed") && p.toString().endsWith(".csv"))
-            .sorted()
-            .collect(Collectors.toList());
 
-        List<Map<String, Double>> rows = new ArrayList<>();
-        List<String> names = new ArrayList<>();
-
-        for (Path p : runFiles) {
-            rows.add(summarizeOneRun(p, N));
-            names.add(p.getFileName().toString().replace(".csv",""));
+        RunArchive.Reader archive = null;
+        List<Callable<RunResult>> jobs = new ArrayList<>();
+        if (Files.exists(dir.resolve(RunArchive.DATA_FILE))) {
+            // binary archive written by BatchRunner --binary: one mapped file, no text parsing
+            System.out.println("Reading " + dir.resolve(RunArchive.DATA_FILE));
+            archive = new RunArchive.Reader(dir);
+            // same order as the sorted run_seed*.csv file names
+            List<Long> seeds = new ArrayList<>();
+            for (long seed : archive.seeds()) seeds.add(seed);
+            seeds.sort(Comparator.comparing(seed -> "run_seed" + seed + ".csv"));
+            RunArchive.Reader a = archive;
+            for (long seed : seeds) jobs.add(() -> readArchiveRun(a, seed, N));
+        } else {
+            List<Path> runFiles = Files.list(dir)
+                .filter(p -> p.getFileName().toString().startsWith("run_seed") && p.toString().endsWith(".csv"))
+                .sorted()
+                .collect(Collectors.toList());
+            for (Path p : runFiles) jobs.add(() -> readCsvRun(p, N));
         }
 
+        RunningStats[] stats = new RunningStats[METRICS.length];
+        for (int m = 0; m < stats.length; m++) stats[m] = new RunningStats();
+        EnsembleCurve curve = new EnsembleCurve();
+
         Path out = Paths.get("analysis", "summaries", scenario + "_summary.csv");
-        writeSummaryCsv(out, rows, names);
+        Files.createDirectories(out.getParent());
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try (BufferedWriter w = Files.newBufferedWriter(out)) {
+            w.write("run,peakI,timeToPeak,finalR,duration,attackRate\n");
+            // keep at most 2 results per thread in flight, consume in order
+            ArrayDeque<Future<RunResult>> window = new ArrayDeque<>();
+            Iterator<Callable<RunResult>> it = jobs.iterator();
+            while (it.hasNext() || !window.isEmpty()) {
+                while (it.hasNext() && window.size() < 2 * threads) window.add(pool.submit(it.next()));
+                RunResult r = await(window.poll());
+                writeSummaryRow(w, r);
+                for (int m = 0; m < stats.length; m++) stats[m].add(r.metric(m));
+                curve.add(r.infected, r.length);
+            }
+        } finally {
+            pool.shutdownNow();
+            if (archive != null) archive.close();
+        }
         System.out.println("Wrote summary: " + out.toString());
 
-        // Also compute and print means & 95% CI
-        printStats("peakI", rows);
-        printStats("timeToPeak", rows);
-        printStats("finalR", rows);
-        printStats("duration", rows);
-        printStats("attackRate", rows);
+        Path curveOut = Paths.get("analysis", "summaries", scenario + "_ensemble.csv");
+        curve.writeCsv(curveOut);
+        System.out.println("Wrote ensemble curve: " + curveOut.toString());
+
+        // Also print means & 95% CI
+        for (int m = 0; m < METRICS.length; m++) printStats(METRICS[m], stats[m]);
+    }
+
+    private static RunResult await(Future<RunResult> f) throws IOException {
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while aggregating");
+        } catch (ExecutionException e) {
+            Throwable c = e.getCause();
+            if (c instanceof IOException) throw (IOException) c;
+            if (c instanceof RuntimeException) throw (RuntimeException) c;
+            throw new IOException(c);
+        }
     }
 
-    static void printStats(String key, List<Map<String, Double>> rows) {
-        int n = rows.size();
+    static void printStats(String key, RunningStats st) {
+        long n = st.count();
         if (n == 0) { System.out.println(key + ": no data"); return; }
-        double[] arr = rows.stream().mapToDouble(m -> m.get(key)).toArray();
-        double mean = Arrays.stream(arr).average().orElse(0.0);
-        double var = 0.0;
-        for (double v : arr) var += (v - mean)*(v - mean);
-        var /= Math.max(1, n-1);
-        double sd = Math.sqrt(var);
+        double mean = st.mean();
+        double sd = st.sd();
         // 95% CI ≈ mean ± 1.96 * sd / sqrt(n)  (use t if you want, this is fine for n>=20)
-        double half = 1.96 * sd / Math.sqrt(n);
+        double half = st.ci95HalfWidth();
         System.out.printf(Locale.US, "%s: mean=%.3f, sd=%.3f, 95%% CI=[%.3f, %.3f], n=%d%n",
                 key, mean, sd, mean - half, mean + half, n);
     }
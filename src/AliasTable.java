@@ -0,0 +1,130 @@
+// src/AliasTable.java
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * Weighted index sampler (Walker/Vose alias method): O(1) per draw, O(n) to build.
+ *
+ * Weights are held in blocks of BLOCK entries, each with its own alias table, plus a
+ * small top-level table over the block totals. A draw picks a block, then an entry in it,
+ * using one uniform for each. Changing a few weights (an intervention) only rebuilds their
+ * blocks and the top level, O(BLOCK + n/BLOCK), instead of the whole table.
+ *
+ * Draws may run on several threads at once; updates must not overlap with draws.
+ */
+public final class AliasTable {
+    static final int BLOCK = 1 << 12;
+
+    private final int n;
+    private final double[] weight;
+    private final double[] prob;   // per entry: keep-probability within its block
+    private final int[] alias;     // per entry: global index of the alias
+    private final double[] blockSum;
+
+    // top level over blocks
+    private double[] topProb;
+    private int[] topAlias;
+    private double total;
+
+    public AliasTable(double[] weights) {
+        this.n = weights.length;
+        this.weight = weights.clone();
+        this.prob = new double[n];
+        this.alias = new int[n];
+        int blocks = Math.max(1, (n + BLOCK - 1) / BLOCK);
+        this.blockSum = new double[blocks];
+        for (double w : weight) {
+            if (!(w >= 0) || Double.isInfinite(w)) throw new IllegalArgumentException("weights must be finite and >= 0, got " + w);
+        }
+        for (int b = 0; b < blocks; b++) buildBlock(b);
+        buildTop();
+    }
+
+    public int size() { return n; }
+
+    public double weight(int i) { return weight[i]; }
+
+    public double total() { return total; }
+
+    /** @return an index with probability weight[i] / total(), or -1 if every weight is 0 */
+    public int sample(RandomGenerator rng) {
+        if (!(total > 0)) return -1;
+        int b = pick(topProb, topAlias, 0, topProb.length, rng.nextDouble());
+        int lo = b * BLOCK;
+        return pick(prob, alias, lo, Math.min(n, lo + BLOCK) - lo, rng.nextDouble());
+    }
+
+    // one uniform: integer part picks the column, fractional part the coin
+    private static int pick(double[] prob, int[] alias, int lo, int len, double u) {
+        double x = u * len;
+        int i = (int) x;
+        if (i >= len) i = len - 1;
+        return (x - i < prob[lo + i]) ? lo + i : alias[lo + i];
+    }
+
+    /** Change one weight; rebuilds its block and the top level. */
+    public void update(int i, double w) {
+        update(new int[] { i }, new double[] { w });
+    }
+
+    /** Change several weights, rebuilding each touched block once. */
+    public void update(int[] ids, double[] w) {
+        boolean[] dirty = new boolean[blockSum.length];
+        for (int j = 0; j < ids.length; j++) {
+            if (!(w[j] >= 0) || Double.isInfinite(w[j])) throw new IllegalArgumentException("weights must be finite and >= 0, got " + w[j]);
+            weight[ids[j]] = w[j];
+            dirty[ids[j] / BLOCK] = true;
+        }
+        for (int b = 0; b < dirty.length; b++) if (dirty[b]) buildBlock(b);
+        buildTop();
+    }
+
+    private void buildBlock(int b) {
+        int lo = b * BLOCK, len = Math.min(n, lo + BLOCK) - lo;
+        double sum = 0;
+        for (int i = lo; i < lo + len; i++) sum += weight[i];
+        blockSum[b] = sum;
+        vose(weight, lo, len, sum, prob, alias);
+    }
+
+    private void buildTop() {
+        int blocks = blockSum.length;
+        if (topProb == null) {
+            topProb = new double[blocks];
+            topAlias = new int[blocks];
+        }
+        double sum = 0;
+        for (double s : blockSum) sum += s;
+        total = sum;
+        vose(blockSum, 0, blocks, sum, topProb, topAlias);
+    }
+
+    /**
+     * Vose's alias construction for w[lo..lo+len) into prob/alias at the same positions;
+     * aliases are absolute indexes. All-zero input gives a uniform table (never sampled).
+     */
+    static void vose(double[] w, int lo, int len, double sum, double[] prob, int[] alias) {
+        if (len == 0) return;
+        if (!(sum > 0)) {
+            Arrays.fill(prob, lo, lo + len, 1.0);
+            for (int i = lo; i < lo + len; i++) alias[i] = i;
+            return;
+        }
+        int[] small = new int[len], large = new int[len];
+        int ns = 0, nl = 0;
+        double scale = len / sum;
+        for (int i = lo; i < lo + len; i++) {
+            prob[i] = w[i] * scale;
+            if (prob[i] < 1.0) small[ns++] = i; else large[nl++] = i;
+        }
+        while (ns > 0 && nl > 0) {
+            int s = small[--ns], l = large[--nl];
+            alias[s] = l;
+            prob[l] = (prob[l] + prob[s]) - 1.0;
+            if (prob[l] < 1.0) small[ns++] = l; else large[nl++] = l;
+        }
+        // leftovers are 1 up to rounding
+        while (nl > 0) { int l = large[--nl]; prob[l] = 1.0; alias[l] = l; }
+        while (ns > 0) { int s = small[--ns]; prob[s] = 1.0; alias[s] = s; }
+    }
+}
@@ -1,6 +1,20 @@
 // src/BatchRunner.java
 import metrics.MetricsCollector;
+import metrics.RunArchive;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class BatchRunner {
 
@@ -8,35 +22,432 @@ public class BatchRunner {
     static final int N = 50, I0 = 2, k = 5, maxSteps = 200;
     static final double beta = 0.10, gamma = 0.05;
 
+    // --aggregate: use the count-based chain-binomial engine instead of agents
+    static boolean aggregate = false;
+
+    // --packed: agents in a PackedPopulation (2 bits each, off-heap), uniform mixing only
+    static boolean packed = false;
+
+    // --binary: append runs to runs/<scenario>/runs.bin instead of two CSVs per run
+    static boolean binary = false;
+
+    // --events: draw infection durations once and schedule recoveries (agent engine only)
+    static boolean events = false;
+
+    // --skip: geometric skip-sampling of the beta/gamma trials (agent engine only)
+    static boolean skip = false;
+
+    // --activity gamma:SHAPE | powerlaw:ALPHA | file:PATH  heterogeneous contact rates (agent engine only)
+    static String activity = null;
+
+    // --spatial HOME,NEAR,ANYWHERE: household / nearby-cell / anywhere contact weights (SpatialMixing)
+    static String spatial = null;
+    static final double SPATIAL_PER_CELL = 25, SPATIAL_HOUSEHOLD = 2.5;
+
+    // --model PATH: run a CompartmentModel (e.g. models/seir.model) on CompartmentSimulation
+    static CompartmentModel model = null;
+
+    // --queue: share the (scenario, seed) jobs with other BatchRunner processes (see runQueued)
+    static boolean queue = false;
+
+    // --cache: reuse finished runs from the ResultCache (runs/.cache) instead of re-simulating
+    static ResultCache cache = null;
+
+    // --live PORT: stream step counts and batch progress as SSE on localhost (LiveServer)
+    // --headless: no step tables or per-run messages on the console
+    static LiveMetrics live = null;
+    static boolean headless = false;
+    static final PrintStream SILENT = new PrintStream(OutputStream.nullOutputStream());
+    private static final AtomicInteger jobsDone = new AtomicInteger();
+
+    // --branch: one trunk run per seed, the other scenarios forked from it (see runBranched)
+    static boolean branch = false;
+    static int forkStep = -1; // --fork-step N; -1 = fork when prevalence first exceeds 5%
+    static final String BRANCH_DIR = "runs/branched";
+
+    static final String[] SCENARIOS = { "baseline", "vaccine30", "quarantine50", "combo" };
+
     // Choose your replication seeds
     static final long[] SEEDS = {
         42,43,44,45,46,47,48,49,50,51,
         52,53,54,55,56,57,58,59,60,61
     };
 
-    static void runScenarioOnce(String scenario, long seed) throws Exception {
+    static void runScenarioOnce(String scenario, long seed, PrintStream console) throws Exception {
+        runScenarioOnce(scenario, seed, console, "runs");
+    }
+
+    /** Same as above with outputs under outputDir/&lt;scenario&gt;/ instead of runs/. */
+    static void runScenarioOnce(String scenario, long seed, PrintStream console, String outputDir) throws Exception {
         SimParams params = new SimParams(N, I0, beta, gamma, k, maxSteps, seed);
+        if (headless) console = SILENT;
+
+        String key = null;
+        if (cache != null) {
+            key = ResultCache.key(params, scenario, engineDescription());
+            MetricsCollector hit = cache.get(key);
+            if (hit != null) {
+                writeCached(hit, scenario, seed, console, outputDir);
+                return;
+            }
+        }
 
         MetricsCollector mc = new MetricsCollector();
-        Simulation sim = new Simulation();
+        SimulationEngine sim = (model != null) ? new CompartmentSimulation(model)
+                             : aggregate ? new AggregateSimulation()
+                             : packed ? new PackedSimulation() : new Simulation();
+        sim.setConsole(console);
         sim.setScenarioFolder(scenario);
         sim.setMetricsCollector(mc);
+        sim.setBinaryOutput(binary);
+        sim.setOutputDir(outputDir);
+        sim.setHeadless(headless);
+        if (live != null) sim.setLiveMetrics(live.open(scenario + "/seed" + seed));
+        ContactSampler sampler = (activity != null) ? heterogeneousMixing(activity, N, seed)
+                               : (spatial != null) ? spatialMixing(spatial, N, seed) : null;
+        if (sim instanceof CompartmentSimulation && sampler != null) {
+            ((CompartmentSimulation) sim).setContactSampler(sampler);
+        }
+        if (sim instanceof Simulation) {
+            if (events) ((Simulation) sim).setInfectiousPeriod(InfectiousPeriod.geometric(gamma));
+            ((Simulation) sim).setSkipSampling(skip);
+            if (sampler != null) ((Simulation) sim).setContactSampler(sampler);
+        }
         sim.initialize(params);
         sim.run();
+        if (cache != null) cache.put(key, mc);
+        if (binary) return;
 
         // also write a quick per-run summary CSV (duplicate of run file, but handy)
-        Path out = Path.of("runs", scenario, "metrics_summary_seed" + seed + ".csv");
+        Path out = Path.of(outputDir, scenario, "metrics_summary_seed" + seed + ".csv");
         mc.writeCsv(out);
-        System.out.println("Saved " + scenario + " summary to: " + out);
+        console.println("Saved " + scenario + " summary to: " + out);
+    }
+
+    /** Write a cached run's outputs exactly where a fresh run would have put them. */
+    private static void writeCached(MetricsCollector mc, String scenario, long seed, PrintStream console, String outputDir) throws IOException {
+        console.println("Cache hit: " + scenario + " seed " + seed + " (" + mc.size() + " rows), nothing simulated.");
+        Path dir = Path.of(outputDir, scenario);
+        if (binary) {
+            RunArchive.append(dir, seed, mc);
+            console.println("Wrote metrics to: " + dir.resolve(RunArchive.DATA_FILE) + " (seed " + seed + ")");
+            return;
+        }
+        Files.createDirectories(dir);
+        Path run = dir.resolve("run_seed" + seed + ".csv");
+        mc.writeCsv(run);
+        console.println("Wrote metrics to: " + run);
+        Path out = dir.resolve("metrics_summary_seed" + seed + ".csv");
+        mc.writeCsv(out);
+        console.println("Saved " + scenario + " summary to: " + out);
+    }
+
+    /** The engine and every option that changes its output, for ResultCache keys. */
+    static String engineDescription() throws IOException {
+        String mixing = "";
+        if (activity != null) {
+            mixing = "+activity=" + activity;
+            if (activity.startsWith("file:")) mixing += "\n" + Files.readString(Path.of(activity.substring(5)));
+        }
+        if (spatial != null) mixing = "+spatial=" + spatial + "/" + SPATIAL_PER_CELL + "/" + SPATIAL_HOUSEHOLD;
+        if (model != null) return "compartments" + mixing + "\n" + model.definition();
+        if (aggregate) return "aggregate";
+        if (packed) return "packed";
+        return "agent" + (events ? "+events" : "") + (skip ? "+skip" : "") + mixing;
+    }
+
+    /**
+     * Branching mode for one seed: run the baseline trunk with common random numbers up
+     * to the fork point, fork every other scenario from it (copy-on-write population),
+     * then finish the trunk and each branch. The shared prefix is simulated once and the
+     * branches only differ where the interventions do. Outputs go to runs/branched/.
+     */
+    static void runBranched(long seed, PrintStream console) throws Exception {
+        SimParams params = new SimParams(N, I0, beta, gamma, k, maxSteps, seed);
+
+        Simulation trunk = new Simulation();
+        trunk.setConsole(console);
+        trunk.setHeadless(headless);
+        trunk.setScenarioFolder(SCENARIOS[0]);
+        trunk.setMetricsCollector(new MetricsCollector());
+        trunk.setBinaryOutput(binary);
+        trunk.setOutputDir(BRANCH_DIR);
+        trunk.setCommonRandomNumbers(true);
+        if (events) trunk.setInfectiousPeriod(InfectiousPeriod.geometric(gamma));
+        if (live != null) trunk.setLiveMetrics(live.open(SCENARIOS[0] + "/seed" + seed));
+        trunk.initialize(params);
+        while (trunk.getStep() < maxSteps && trunk.infectedCount() > 0 && !atForkPoint(trunk)) {
+            trunk.step();
+        }
+
+        List<Simulation> branches = new ArrayList<>();
+        for (int s = 1; s < SCENARIOS.length; s++) {
+            Simulation b = trunk.fork(SCENARIOS[s]);
+            if (live != null) b.setLiveMetrics(live.open(SCENARIOS[s] + "/seed" + seed));
+            branches.add(b);
+        }
+        console.println("Forked " + branches.size() + " branches at step " + trunk.getStep());
+
+        int total = SCENARIOS.length * SEEDS.length;
+        trunk.run();
+        jobFinished(total);
+        for (Simulation b : branches) {
+            console.println("\n--- branch: " + b.getScenarioFolder() + " ---");
+            b.run();
+            jobFinished(total);
+        }
+    }
+
+    /** Build the --activity sampler; generated weights use the run's seed. */
+    static HeterogeneousMixing heterogeneousMixing(String spec, int n, long seed) throws IOException {
+        String[] kv = spec.split(":", 2);
+        switch (kv[0]) {
+            case "gamma":    return new HeterogeneousMixing(HeterogeneousMixing.gamma(n, Double.parseDouble(kv[1]), seed), null);
+            case "powerlaw": return new HeterogeneousMixing(HeterogeneousMixing.powerLaw(n, Double.parseDouble(kv[1]), seed), null);
+            case "file":     return HeterogeneousMixing.load(Path.of(kv[1]));
+            default: throw new IllegalArgumentException("--activity expects gamma:SHAPE, powerlaw:ALPHA or file:PATH, got " + spec);
+        }
+    }
+
+    /** Build the --spatial sampler; the household layout uses the run's seed. */
+    static SpatialMixing spatialMixing(String spec, int n, long seed) {
+        String[] w = spec.split(",");
+        if (w.length != 3) throw new IllegalArgumentException("--spatial expects HOME,NEAR,ANYWHERE weights, got " + spec);
+        SpatialMixing m = SpatialMixing.generate(n, SPATIAL_PER_CELL, SPATIAL_HOUSEHOLD, seed);
+        m.setWeights(Double.parseDouble(w[0]), Double.parseDouble(w[1]), Double.parseDouble(w[2]));
+        return m;
+    }
+
+    private static boolean atForkPoint(Simulation sim) {
+        if (forkStep >= 0) return sim.getStep() >= forkStep;
+        return (double) sim.infectedCount() / N > 0.05; // the quarantine trigger
+    }
+
+    static String runBranchedCaptured(long seed) throws Exception {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try (PrintStream console = new PrintStream(buf)) {
+            runBranched(seed, console);
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Run one job with its own Simulation/MetricsCollector and capture its console
+     * output, so parallel jobs don't interleave their step tables.
+     */
+    static String runScenarioCaptured(String scenario, long seed) throws Exception {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try (PrintStream console = new PrintStream(buf)) {
+            runScenarioOnce(scenario, seed, console);
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Queue mode: claim jobs from the shared file-lock queue under runs/.queue (JobQueue)
+     * until every (scenario, seed) job has its outputs. Start as many workers as you like,
+     * at any time, on the same runs/ folder; each also runs --threads claim loops. Jobs
+     * whose outputs exist are skipped, so a crashed or stopped batch resumes where it
+     * left off (delete the outputs to rerun after changing parameters). Job output is
+     * printed as jobs finish, so the console order depends on the workers.
+     */
+    static void runQueued(ExecutorService pool, int loops) throws Exception {
+        JobQueue q = new JobQueue(Path.of("runs"));
+        int ran = 0;
+        if (pool == null) {
+            ran = claimLoop(q);
+        } else {
+            List<Future<Integer>> workers = new ArrayList<>();
+            for (int w = 0; w < loops; w++) workers.add(pool.submit(() -> claimLoop(q)));
+            for (Future<Integer> f : workers) ran += f.get();
+        }
+        System.out.println("\nQueue drained: this worker ran " + ran + " of " + SCENARIOS.length * SEEDS.length + " jobs.");
+    }
+
+    // pass over the job list until every job is done; returns the number of jobs run here
+    private static int claimLoop(JobQueue q) throws Exception {
+        int ran = 0;
+        while (true) {
+            boolean busyElsewhere = false;
+            for (String scenario : SCENARIOS) {
+                for (long seed : SEEDS) {
+                    if (jobDone(scenario, seed)) continue;
+                    try (JobQueue.Claim claim = q.tryClaim(scenario + "_seed" + seed)) {
+                        if (claim == null) { busyElsewhere = true; continue; }
+                        if (jobDone(scenario, seed)) continue; // finished between the check and the claim
+                        String out = runClaimed(claim, scenario, seed);
+                        synchronized (System.out) {
+                            System.out.println("\n=== QUEUE: " + scenario + " seed " + seed + " ===");
+                            System.out.print(out);
+                        }
+                        ran++;
+                        jobFinished(SCENARIOS.length * SEEDS.length);
+                    }
+                }
+            }
+            if (!busyElsewhere) return ran;
+            Thread.sleep(200); // someone else holds the rest; take over if their worker dies
+        }
+    }
+
+    private static String runClaimed(JobQueue.Claim claim, String scenario, long seed) throws Exception {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try (PrintStream console = new PrintStream(buf)) {
+            if (binary) {
+                // RunArchive appends are locked and crash-safe (a run counts once its index
+                // entry is written, and a torn tail is cut on the next append), so no staging
+                runScenarioOnce(scenario, seed, console, "runs");
+            } else {
+                Path staging = claim.folder();
+                runScenarioOnce(scenario, seed, console, staging.toString());
+                // the run file marks the job as done, so it goes last
+                claim.publish(Path.of(scenario, "metrics_summary_seed" + seed + ".csv"),
+                              Path.of(scenario, "run_seed" + seed + ".csv"));
+            }
+        }
+        return buf.toString();
+    }
+
+    static boolean jobDone(String scenario, long seed) throws IOException {
+        Path dir = Path.of("runs", scenario);
+        if (binary) {
+            if (!Files.exists(dir.resolve(RunArchive.DATA_FILE))) return false;
+            try (RunArchive.Reader r = new RunArchive.Reader(dir)) {
+                return r.contains(seed);
+            }
+        }
+        return Files.exists(dir.resolve("run_seed" + seed + ".csv"))
+            && Files.exists(dir.resolve("metrics_summary_seed" + seed + ".csv"));
+    }
+
+    // count a finished job and publish batch progress when --live is on
+    private static void jobFinished(int total) {
+        int done = jobsDone.incrementAndGet();
+        if (live != null) live.progress(done, total);
+    }
+
+    /**
+     * Pick an executor from the command line:
+     *   --threads N   fixed pool of N threads (N=0 means one per core)
+     *   --virtual     one virtual thread per job (falls back to a core-sized pool before Java 21)
+     * @return null when no flag is given, meaning run sequentially on this thread
+     */
+    static ExecutorService executorFromArgs(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            if ("--threads".equals(args[i]) && i + 1 < args.length) {
+                int n = Integer.parseInt(args[i + 1]);
+                if (n <= 0) n = Runtime.getRuntime().availableProcessors();
+                return Executors.newFixedThreadPool(n);
+            }
+            if ("--virtual".equals(args[i])) {
+                try {
+                    Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                    return (ExecutorService) m.invoke(null);
+                } catch (ReflectiveOperationException e) {
+                    System.err.println("Virtual threads not available on this JVM; using a fixed pool.");
+                    return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+                }
+            }
+        }
+        return null;
     }
 
     public static void main(String[] args) throws Exception {
-        String[] scenarios = { "baseline", "vaccine30", "quarantine50", "combo" };
+        String[] scenarios = SCENARIOS;
+        aggregate = Arrays.asList(args).contains("--aggregate");
+        packed = Arrays.asList(args).contains("--packed");
+        binary = Arrays.asList(args).contains("--binary");
+        branch = Arrays.asList(args).contains("--branch");
+        events = Arrays.asList(args).contains("--events");
+        skip = Arrays.asList(args).contains("--skip");
+        int act = Arrays.asList(args).indexOf("--activity");
+        if (act >= 0 && act + 1 < args.length) activity = args[act + 1];
+        int sp = Arrays.asList(args).indexOf("--spatial");
+        if (sp >= 0 && sp + 1 < args.length) spatial = args[sp + 1];
+        if (activity != null && spatial != null) throw new IllegalArgumentException("use either --activity or --spatial");
+        int mi = Arrays.asList(args).indexOf("--model");
+        if (mi >= 0 && mi + 1 < args.length) model = CompartmentModel.load(Path.of(args[mi + 1]));
+        int fs = Arrays.asList(args).indexOf("--fork-step");
+        if (fs >= 0 && fs + 1 < args.length) forkStep = Integer.parseInt(args[fs + 1]);
+
+        queue = Arrays.asList(args).contains("--queue");
+        if (Arrays.asList(args).contains("--cache")) cache = ResultCache.fromProperties();
+        headless = Arrays.asList(args).contains("--headless");
+        int lp = Arrays.asList(args).indexOf("--live");
+        LiveServer server = null;
+        if (lp >= 0 && lp + 1 < args.length) {
+            live = new LiveMetrics(1 << 16);
+            server = new LiveServer(live, Integer.parseInt(args[lp + 1]));
+            System.out.println("Live metrics at http://localhost:" + server.port() + "/events");
+        }
+        try {
+            runBatch(args, scenarios);
+        } finally {
+            if (server != null) server.close();
+        }
+    }
 
-        for (String scenario : scenarios) {
-            System.out.println("\n=== BATCH: " + scenario + " ===");
-            for (long seed : SEEDS) {
-                runScenarioOnce(scenario, seed);
+    private static void runBatch(String[] args, String[] scenarios) throws Exception {
+        ExecutorService pool = executorFromArgs(args);
+        if (queue) {
+            try {
+                int t = Arrays.asList(args).indexOf("--threads");
+                int loops = (t >= 0 && t + 1 < args.length) ? Integer.parseInt(args[t + 1]) : 0;
+                runQueued(pool, loops > 0 ? loops : Runtime.getRuntime().availableProcessors());
+            } finally {
+                if (pool != null) pool.shutdownNow();
+            }
+            return;
+        }
+        if (branch) {
+            try {
+                List<Future<String>> jobs = new ArrayList<>();
+                if (pool != null) {
+                    for (long seed : SEEDS) jobs.add(pool.submit(() -> runBranchedCaptured(seed)));
+                }
+                for (int s = 0; s < SEEDS.length; s++) {
+                    System.out.println("\n=== BRANCHED: seed " + SEEDS[s] + " ===");
+                    if (pool == null) runBranched(SEEDS[s], System.out);
+                    else System.out.print(jobs.get(s).get());
+                }
+            } finally {
+                if (pool != null) pool.shutdownNow();
+            }
+            System.out.println("\nBatch complete. All CSVs saved under " + BRANCH_DIR + "/<scenario>/");
+            return;
+        }
+        if (pool == null) {
+            for (String scenario : scenarios) {
+                System.out.println("\n=== BATCH: " + scenario + " ===");
+                for (long seed : SEEDS) {
+                    runScenarioOnce(scenario, seed, System.out);
+                    jobFinished(scenarios.length * SEEDS.length);
+                }
+            }
+        } else {
+            // submit every (scenario, seed) job at once, then print captured output in
+            // submission order so the console and CSVs match the sequential run exactly
+            try {
+                List<Future<String>> jobs = new ArrayList<>();
+                for (String scenario : scenarios) {
+                    for (long seed : SEEDS) {
+                        jobs.add(pool.submit(() -> {
+                            String out = runScenarioCaptured(scenario, seed);
+                            jobFinished(scenarios.length * SEEDS.length);
+                            return out;
+                        }));
+                    }
+                }
+                int j = 0;
+                for (String scenario : scenarios) {
+                    System.out.println("\n=== BATCH: " + scenario + " ===");
+                    for (int s = 0; s < SEEDS.length; s++, j++) {
+                        System.out.print(jobs.get(j).get());
+                        jobs.set(j, null); // let the buffer go once printed
+                    }
+                }
+            } finally {
+                pool.shutdownNow();
             }
         }
         System.out.println("\nBatch complete. All CSVs saved under runs/<scenario>/");
@@ -0,0 +1,131 @@
+// src/Binomial.java
+import java.util.random.RandomGenerator;
+
+/**
+ * Exact Binomial(n, p) sampler with O(1) expected cost for large n.
+ * Small means use inversion; larger ones use the BTPE rejection algorithm
+ * (Kachitvichyanukul &amp; Schmeiser 1988), the same split numpy uses.
+ */
+public final class Binomial {
+    private Binomial() {}
+
+    public static long sample(RandomGenerator rng, long n, double p) {
+        if (n <= 0 || p <= 0.0) return 0;
+        if (p >= 1.0) return n;
+        if (p <= 0.5) {
+            return (p * n <= 30.0) ? inversion(rng, n, p) : btpe(rng, n, p);
+        }
+        double q = 1.0 - p;
+        return (q * n <= 30.0) ? n - inversion(rng, n, q) : btpe(rng, n, p);
+    }
+
+    // walk the CDF from 0; expected cost O(np), only used when np <= 30 and p <= 0.5
+    private static long inversion(RandomGenerator rng, long n, double p) {
+        double q = 1.0 - p;
+        double qn = Math.exp(n * Math.log(q));
+        double np = n * p;
+        double bound = Math.min(n, np + 10.0 * Math.sqrt(np * q + 1));
+
+        long x = 0;
+        double px = qn;
+        double u = rng.nextDouble();
+        while (u > px) {
+            x++;
+            if (x > bound) {
+                x = 0;
+                px = qn;
+                u = rng.nextDouble();
+            } else {
+                u -= px;
+                px = ((n - x + 1) * p * px) / (x * q);
+            }
+        }
+        return x;
+    }
+
+    private static long btpe(RandomGenerator rng, long n, double p) {
+        double r = Math.min(p, 1.0 - p);
+        double q = 1.0 - r;
+        double fm = n * r + r;
+        long m = (long) Math.floor(fm);
+        double p1 = Math.floor(2.195 * Math.sqrt(n * r * q) - 4.6 * q) + 0.5;
+        double xm = m + 0.5;
+        double xl = xm - p1;
+        double xr = xm + p1;
+        double c = 0.134 + 20.5 / (15.3 + m);
+        double a = (fm - xl) / (fm - xl * r);
+        double laml = a * (1.0 + a / 2.0);
+        a = (xr - fm) / (xr * q);
+        double lamr = a * (1.0 + a / 2.0);
+        double p2 = p1 * (1.0 + 2.0 * c);
+        double p3 = p2 + c / laml;
+        double p4 = p3 + c / lamr;
+        double nrq = n * r * q;
+
+        while (true) {
+            double u = rng.nextDouble() * p4;
+            double v = rng.nextDouble();
+            long y;
+            if (u <= p1) {
+                // triangular centre: accept immediately
+                y = (long) Math.floor(xm - p1 * v + u);
+                return (p > 0.5) ? n - y : y;
+            } else if (u <= p2) {
+                // parallelograms
+                double x = xl + (u - p1) / c;
+                v = v * c + 1.0 - Math.abs(m - x + 0.5) / p1;
+                if (v > 1.0) continue;
+                y = (long) Math.floor(x);
+            } else if (u <= p3) {
+                // left exponential tail
+                y = (long) Math.floor(xl + Math.log(v) / laml);
+                if (y < 0 || v == 0.0) continue;
+                v = v * (u - p2) * laml;
+            } else {
+                // right exponential tail
+                y = (long) Math.floor(xr - Math.log(v) / lamr);
+                if (y > n || v == 0.0) continue;
+                v = v * (u - p3) * lamr;
+            }
+
+            long k = Math.abs(y - m);
+            if (k <= 20 || k >= nrq / 2.0 - 1) {
+                // explicit evaluation of f(y)/f(m)
+                double s = r / q;
+                double aa = s * (n + 1);
+                double f = 1.0;
+                if (m < y) {
+                    for (long i = m + 1; i <= y; i++) f *= (aa / i - s);
+                } else if (m > y) {
+                    for (long i = y + 1; i <= m; i++) f /= (aa / i - s);
+                }
+                if (v > f) continue;
+                return (p > 0.5) ? n - y : y;
+            }
+
+            // squeeze using upper and lower bounds on log(f(y))
+            double rho = (k / nrq) * ((k * (k / 3.0 + 0.625) + 0.16666666666666666) / nrq + 0.5);
+            double t = -k * k / (2 * nrq);
+            double logV = Math.log(v);
+            if (logV < t - rho) return (p > 0.5) ? n - y : y;
+            if (logV > t + rho) continue;
+
+            // final acceptance test with Stirling corrections
+            double x1 = y + 1;
+            double f1 = m + 1;
+            double z = n + 1 - m;
+            double w = n - y + 1;
+            double bound = xm * Math.log(f1 / x1)
+                    + (n - m + 0.5) * Math.log(z / w)
+                    + (y - m) * Math.log(w * r / (x1 * q))
+                    + stirling(f1) + stirling(z) + stirling(x1) + stirling(w);
+            if (logV > bound) continue;
+            return (p > 0.5) ? n - y : y;
+        }
+    }
+
+    private static double stirling(double x) {
+        double x2 = x * x;
+        return (13680. - (462. - (132. - (99. - 140. / x2) / x2) / x2) / x2) / x / 166320.;
+    }
+}
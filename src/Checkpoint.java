@@ -0,0 +1,206 @@
+// src/Checkpoint.java
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Random;
+
+import metrics.MetricsCollector;
+
+/**
+ * Binary snapshot of a Simulation's full state, so a run can be paused and resumed
+ * bit-identically (or branched into what-if variants from a later step).
+ *
+ * Layout: long magic, int version, int headerBytes, header, then the bulk arrays.
+ * The header holds SimParams, scenario, step, population clock, the serialized
+ * java.util.Random (its exact internal seed), which scenario actions have already
+ * fired, the pending event-scheduled recoveries as (id, due step) pairs (count -1 when
+ * recoveries are drawn per step) and the metrics recorded so far.
+ * The bulk part is the per-person state bytes followed by the entry ticks as ints;
+ * both go straight to a FileChannel (the ticks through a reused direct buffer), so large
+ * populations write and load at disk speed.
+ */
+final class Checkpoint {
+    private static final long MAGIC = 0x53494D434B505431L; // "SIMCKPT1"
+    private static final int VERSION = 3; // 2: + finished intervention actions, 3: + recovery schedule
+    private static final int OLDEST = 1;
+    private static final int CHUNK = 1 << 24; // 16 MB transfer buffer
+
+    SimParams params;
+    String scenario;
+    int step;
+    Random rng;
+    Population population;
+    int[] finishedActions; // null for version 1: every action had fired (see read)
+    int[] recoveries; // (id, due) pairs, or null if recoveries are drawn per step
+
+    /** @param recoveries TimingWheel.pending() of an event-scheduled run, else null */
+    static void write(Path path, SimParams params, String scenario, int step, Random rng,
+                      Population pop, MetricsCollector mc, int[] finishedActions, int[] recoveries) throws IOException {
+        ByteArrayOutputStream hb = new ByteArrayOutputStream();
+        try (DataOutputStream h = new DataOutputStream(hb)) {
+            h.writeInt(params.populationSize);
+            h.writeInt(params.initialInfected);
+            h.writeDouble(params.beta);
+            h.writeDouble(params.gamma);
+            h.writeInt(params.contactsPerStep);
+            h.writeInt(params.maxSteps);
+            h.writeLong(params.seed);
+            h.writeUTF(scenario);
+            h.writeInt(step);
+            h.writeInt(pop.clock());
+            h.writeInt(pop.size());
+
+            ByteArrayOutputStream rb = new ByteArrayOutputStream();
+            try (ObjectOutputStream o = new ObjectOutputStream(rb)) {
+                o.writeObject(rng);
+            }
+            h.writeInt(rb.size());
+            rb.writeTo(h);
+
+            h.writeInt(finishedActions.length);
+            for (int a : finishedActions) h.writeInt(a);
+
+            h.writeInt(recoveries == null ? -1 : recoveries.length / 2);
+            if (recoveries != null) for (int v : recoveries) h.writeInt(v);
+
+            // metrics recorded so far, column by column
+            List<String> names = mc.columnNames();
+            h.writeInt(names.size());
+            for (String n : names) h.writeUTF(n);
+            h.writeInt(mc.size());
+            for (int c = 0; c < names.size(); c++) {
+                for (int r = 0; r < mc.size(); r++) h.writeInt(mc.get(c, r));
+            }
+        }
+
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                               StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer head = ByteBuffer.allocate(16 + hb.size());
+            head.putLong(MAGIC).putInt(VERSION).putInt(hb.size()).put(hb.toByteArray()).flip();
+            writeFully(ch, head);
+
+            int n = pop.size();
+            for (int p = 0, base = 0; base < n; p++, base += Population.PAGE) {
+                writeFully(ch, ByteBuffer.wrap(pop.statePage(p), 0, Math.min(Population.PAGE, n - base)));
+            }
+
+            // entry ticks: gather whole pages into the direct buffer, flush when full
+            ByteBuffer buf = ByteBuffer.allocateDirect(CHUNK);
+            IntBuffer ints = buf.asIntBuffer();
+            for (int p = 0, base = 0; base < n; p++, base += Population.PAGE) {
+                int len = Math.min(Population.PAGE, n - base);
+                if (ints.remaining() < len) flushInts(ch, buf, ints);
+                ints.put(pop.entryTickPage(p), 0, len);
+            }
+            flushInts(ch, buf, ints);
+        }
+    }
+
+    private static void flushInts(FileChannel ch, ByteBuffer buf, IntBuffer ints) throws IOException {
+        buf.clear().limit(ints.position() * 4);
+        writeFully(ch, buf);
+        ints.clear();
+    }
+
+    /** Read a snapshot; metrics rows are appended to 'mc' (which must be empty). */
+    static Checkpoint read(Path path, MetricsCollector mc) throws IOException {
+        Checkpoint cp = new Checkpoint();
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer fixed = ByteBuffer.allocate(16);
+            readFully(ch, fixed);
+            if (fixed.getLong() != MAGIC) throw new IOException("not a simulation checkpoint: " + path);
+            int version = fixed.getInt();
+            if (version < OLDEST || version > VERSION) {
+                throw new IOException("unsupported checkpoint version " + version + " (this build reads "
+                        + OLDEST + " to " + VERSION + "): " + path);
+            }
+            ByteBuffer head = ByteBuffer.allocate(fixed.getInt());
+            readFully(ch, head);
+
+            int n, clock;
+            try (DataInputStream h = new DataInputStream(new ByteArrayInputStream(head.array()))) {
+                cp.params = new SimParams(h.readInt(), h.readInt(), h.readDouble(), h.readDouble(),
+                                          h.readInt(), h.readInt(), h.readLong());
+                cp.scenario = h.readUTF();
+                cp.step = h.readInt();
+                clock = h.readInt();
+                n = h.readInt();
+
+                byte[] rngBytes = new byte[h.readInt()];
+                h.readFully(rngBytes);
+                try (ObjectInputStream o = new ObjectInputStream(new ByteArrayInputStream(rngBytes))) {
+                    cp.rng = (Random) o.readObject();
+                } catch (ClassNotFoundException e) {
+                    throw new IOException("bad RNG state in " + path, e);
+                }
+
+                // version 1 predates scenario files: its only action, vaccination at t=0, ran
+                // in initialize() before any checkpoint could be taken
+                if (version >= 2) {
+                    cp.finishedActions = new int[h.readInt()];
+                    for (int i = 0; i < cp.finishedActions.length; i++) cp.finishedActions[i] = h.readInt();
+                }
+
+                int pending = (version >= 3) ? h.readInt() : -1;
+                if (pending >= 0) {
+                    cp.recoveries = new int[2 * pending];
+                    for (int i = 0; i < cp.recoveries.length; i++) cp.recoveries[i] = h.readInt();
+                }
+
+                int ncols = h.readInt();
+                for (int c = 0; c < ncols; c++) {
+                    String name = h.readUTF();
+                    if (c >= 4) mc.addColumn(name);
+                }
+                int rows = h.readInt();
+                int[][] cols = new int[ncols][rows];
+                for (int c = 0; c < ncols; c++) {
+                    for (int r = 0; r < rows; r++) cols[c][r] = h.readInt();
+                }
+                for (int r = 0; r < rows; r++) {
+                    mc.record(cols[0][r], cols[1][r], cols[2][r], cols[3][r]);
+                    for (int c = 4; c < ncols; c++) mc.set(c, cols[c][r]);
+                }
+            }
+
+            byte[] states = new byte[n];
+            readFully(ch, ByteBuffer.wrap(states));
+
+            int[] entry = new int[n];
+            ByteBuffer buf = ByteBuffer.allocateDirect(CHUNK);
+            for (int from = 0; from < n; ) {
+                int len = Math.min(n - from, CHUNK / 4);
+                buf.clear().limit(len * 4);
+                readFully(ch, buf);
+                buf.asIntBuffer().get(entry, from, len);
+                from += len;
+            }
+            cp.population = Population.restore(states, entry, n, clock);
+        }
+        return cp;
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer b) throws IOException {
+        while (b.hasRemaining()) ch.write(b);
+    }
+
+    // fills b completely and flips it for reading
+    private static void readFully(FileChannel ch, ByteBuffer b) throws IOException {
+        while (b.hasRemaining()) {
+            if (ch.read(b) < 0) throw new IOException("checkpoint is truncated");
+        }
+        b.flip();
+    }
+}
@@ -0,0 +1,196 @@
+// src/CompartmentModel.java
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+/**
+ * Compartments and transitions declared as data, for CompartmentSimulation.
+ *
+ * Compartments get byte codes in declaration order (the first one is where everyone
+ * starts). A model file has one declaration per line, '#' starts a comment:
+ *
+ *   compartments S E I R D
+ *   infection S -&gt; E            # a susceptible compartment and where infection sends it
+ *   infectious I 1.0            # infectious compartment and relative infectiousness
+ *   E -&gt; I rate 0.2             # leave after a Geometric(0.2) number of steps
+ *   I -&gt; R 0.98 D 0.02 rate gamma   # branch with probabilities; 'gamma' = SimParams.gamma
+ *   R -&gt; S after fixed 90       # waning immunity; also: after erlang K MEAN
+ *
+ * "rate p" has the same law as the classic per-step Bernoulli(p) draw. Compartments with
+ * no "-&gt;" line are absorbing. See models/*.model for SIR, SEIR, SEIRS and SEIRD.
+ */
+public final class CompartmentModel {
+    /** How and where people leave one compartment. */
+    static final class Exit {
+        final double rate;             // per-step probability, NaN = SimParams.gamma, or
+        final InfectiousPeriod after;  // a duration distribution (null when rate is used)
+        final byte[] to;
+        final double[] cumProb;        // cumulative branch probabilities, last = 1
+
+        Exit(double rate, InfectiousPeriod after, byte[] to, double[] cumProb) {
+            this.rate = rate;
+            this.after = after;
+            this.to = to;
+            this.cumProb = cumProb;
+        }
+
+        InfectiousPeriod duration(double gamma) {
+            return (after != null) ? after : InfectiousPeriod.geometric(Double.isNaN(rate) ? gamma : rate);
+        }
+
+        byte pick(RandomGenerator rng) {
+            if (to.length == 1) return to[0];
+            double u = rng.nextDouble();
+            for (int i = 0; i < to.length - 1; i++) if (u < cumProb[i]) return to[i];
+            return to[to.length - 1];
+        }
+    }
+
+    final String[] names;
+    final byte[] infectTo;          // per compartment: where infection sends it, -1 = not susceptible
+    final double[] infectiousness;  // per compartment: relative infectiousness, 0 = not infectious
+    final Exit[] exits;             // per compartment, null = absorbing
+    final boolean[] active;         // infectious, or can still become infectious without a new infection
+    private final String definition;
+
+    private CompartmentModel(String[] names, byte[] infectTo, double[] infectiousness, Exit[] exits, String definition) {
+        this.definition = definition;
+        this.names = names;
+        this.infectTo = infectTo;
+        this.infectiousness = infectiousness;
+        this.exits = exits;
+        this.active = new boolean[names.length];
+        // a compartment is active if an infectious one is reachable through exits alone
+        for (boolean changed = true; changed; ) {
+            changed = false;
+            for (int c = 0; c < names.length; c++) {
+                if (active[c]) continue;
+                boolean a = infectiousness[c] > 0;
+                if (!a && exits[c] != null) for (byte t : exits[c].to) a |= active[t];
+                if (a) { active[c] = true; changed = true; }
+            }
+        }
+        boolean any = false;
+        for (double x : infectiousness) any |= x > 0;
+        if (!any) throw new IllegalArgumentException("model has no infectious compartment");
+    }
+
+    public int size() { return names.length; }
+
+    /** The declarations without comments or blank lines (e.g. for ResultCache keys). */
+    public String definition() { return definition; }
+
+    public String name(int code) { return names[code]; }
+
+    /** @return the code of a compartment, or -1 */
+    public int code(String name) { return Arrays.asList(names).indexOf(name); }
+
+    public static CompartmentModel load(Path path) throws IOException {
+        return parse(Files.readAllLines(path), path.toString());
+    }
+
+    /** Parse model lines (see class comment). 'source' is only used in error messages. */
+    public static CompartmentModel parse(List<String> lines, String source) {
+        List<String> names = null;
+        byte[] infectTo = null;
+        double[] infectiousness = null;
+        Exit[] exits = null;
+        StringBuilder definition = new StringBuilder();
+        for (int n = 0; n < lines.size(); n++) {
+            String line = lines.get(n);
+            int hash = line.indexOf('#');
+            if (hash >= 0) line = line.substring(0, hash);
+            line = line.trim();
+            if (line.isEmpty()) continue;
+            String[] t = line.split("\\s+");
+            definition.append(String.join(" ", t)).append('\n');
+            try {
+                if (t[0].equals("compartments")) {
+                    if (names != null) throw new IllegalArgumentException("compartments declared twice");
+                    names = new ArrayList<>(Arrays.asList(t).subList(1, t.length));
+                    if (names.isEmpty() || names.size() > Byte.MAX_VALUE) throw new IllegalArgumentException("need 1..127 compartments");
+                    infectTo = new byte[names.size()];
+                    Arrays.fill(infectTo, (byte) -1);
+                    infectiousness = new double[names.size()];
+                    exits = new Exit[names.size()];
+                    continue;
+                }
+                if (names == null) throw new IllegalArgumentException("declare compartments first");
+                if (t[0].equals("infection")) {
+                    expect(t, 2, "->");
+                    infectTo[code(names, t[1])] = code(names, t[3]);
+                } else if (t[0].equals("infectious")) {
+                    infectiousness[code(names, t[1])] = (t.length > 2) ? Double.parseDouble(t[2]) : 1.0;
+                } else {
+                    expect(t, 1, "->");
+                    byte from = code(names, t[0]);
+                    if (exits[from] != null) throw new IllegalArgumentException(t[0] + " already has an exit");
+                    exits[from] = parseExit(names, t);
+                }
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException(source + ":" + (n + 1) + ": " + e.getMessage() + " in '" + line + "'", e);
+            }
+        }
+        if (names == null) throw new IllegalArgumentException(source + ": no compartments declared");
+        return new CompartmentModel(names.toArray(new String[0]), infectTo, infectiousness, exits, definition.toString());
+    }
+
+    // "<from> -> <to> [p] [<to> p]... (rate X | after fixed D | after geometric P | after erlang K MEAN)"
+    private static Exit parseExit(List<String> names, String[] t) {
+        List<Byte> to = new ArrayList<>();
+        List<Double> probs = new ArrayList<>();
+        int i = 2;
+        while (i < t.length && !t[i].equals("rate") && !t[i].equals("after")) {
+            to.add(code(names, t[i++]));
+            probs.add((i < t.length && isNumber(t[i])) ? Double.parseDouble(t[i++]) : Double.NaN);
+        }
+        if (to.isEmpty()) throw new IllegalArgumentException("no destination");
+        double given = 0;
+        int missing = 0;
+        for (double p : probs) if (Double.isNaN(p)) missing++; else given += p;
+        if (given > 1 + 1e-9 || (missing == 0 && Math.abs(given - 1) > 1e-9)) {
+            throw new IllegalArgumentException("branch probabilities must add up to 1");
+        }
+        byte[] codes = new byte[to.size()];
+        double[] cum = new double[to.size()];
+        double acc = 0;
+        for (int k = 0; k < codes.length; k++) {
+            codes[k] = to.get(k);
+            acc += Double.isNaN(probs.get(k)) ? (1 - given) / missing : probs.get(k);
+            cum[k] = acc;
+        }
+        cum[cum.length - 1] = 1.0;
+
+        if (i >= t.length) throw new IllegalArgumentException("expected 'rate' or 'after'");
+        if (t[i].equals("rate")) {
+            double rate = t[i + 1].equals("gamma") ? Double.NaN : Double.parseDouble(t[i + 1]);
+            return new Exit(rate, null, codes, cum);
+        }
+        InfectiousPeriod after;
+        switch (t[i + 1]) {
+            case "fixed":     after = InfectiousPeriod.fixed(Integer.parseInt(t[i + 2])); break;
+            case "geometric": after = InfectiousPeriod.geometric(Double.parseDouble(t[i + 2])); break;
+            case "erlang":    after = InfectiousPeriod.erlang(Integer.parseInt(t[i + 2]), Double.parseDouble(t[i + 3])); break;
+            default: throw new IllegalArgumentException("unknown duration '" + t[i + 1] + "'");
+        }
+        return new Exit(Double.NaN, after, codes, cum);
+    }
+
+    private static boolean isNumber(String s) {
+        return !s.isEmpty() && (Character.isDigit(s.charAt(0)) || s.charAt(0) == '.');
+    }
+
+    private static void expect(String[] t, int i, String word) {
+        if (t.length <= i + 1 || !t[i].equals(word)) throw new IllegalArgumentException("expected '" + word + "'");
+    }
+
+    private static byte code(List<String> names, String name) {
+        int c = names.indexOf(name);
+        if (c < 0) throw new IllegalArgumentException("unknown compartment '" + name + "'");
+        return (byte) c;
+    }
+}
@@ -0,0 +1,354 @@
+// src/CompartmentSimulation.java
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import metrics.MetricsCollector;
+import metrics.RunArchive;
+
+/**
+ * Agent-based engine for any CompartmentModel (SEIR, SEIRS, SEIRD, ...).
+ *
+ * Each person's compartment is a byte code in one array, with a count per compartment.
+ * Every step, each person in an infectious compartment makes kEff contacts (through the
+ * ContactSampler, uniform by default) and infects a contact in a susceptible compartment
+ * with probability beta * infectiousness. Every other transition is an event: the time
+ * spent in a compartment is drawn on entry and scheduled on a TimingWheel, so latency,
+ * recovery, waning and death cost nothing on steps where nobody changes compartment.
+ * As in Simulation, changes drawn during a step take effect at its end.
+ *
+ * Metrics keep the step,S,I,R columns (compartments with those names, 0 if the model
+ * has none) so Aggregator and the archive read the runs as usual; the other compartments
+ * are added as extra columns in model order.
+ */
+public class CompartmentSimulation implements SimulationEngine {
+    private final CompartmentModel model;
+    private final InfectiousPeriod[] durations;
+
+    private SimParams params;
+    private Random rng;
+    private int step;
+    private MetricsCollector metrics;
+    private ContactSampler contactSampler;
+    private ContactSampler contacts;
+
+    // per person: compartment code and the step its scheduled exit is due (-1 = none)
+    private byte[] code;
+    private int[] due;
+    private final int[] count;
+    private TimingWheel wheel;
+
+    // people in infectious compartments: dense list + position (swap-remove, like Population)
+    private int[] infectious, infectiousPos;
+    private int infectiousCount;
+
+    // scratch, reused every step
+    private int[] newInfections = new int[16], dueNow = new int[16];
+    private int[] metricsColumn;
+    private int[] row;
+
+    private String scenarioFolder = "baseline";
+    private PrintStream console = System.out;
+    private boolean binaryOutput = false;
+    private boolean headless = false;
+    private LiveMetrics.Run live;
+    private String outputDir = "runs";
+
+    private List<Intervention> interventions;
+    private InterventionPlan plan;
+    private final Intervention.Host host = new Intervention.Host() {
+        @Override public int time() { return step; }
+        @Override public long count(HealthState s) { return CompartmentSimulation.this.count(s); }
+        @Override public long size() { return params.populationSize; }
+        @Override public void vaccinate(double fraction) { CompartmentSimulation.this.vaccinate(fraction); }
+        @Override public String scenario() { return scenarioFolder; }
+        @Override public void log(String message) { console.println(message); }
+    };
+
+    public CompartmentSimulation(CompartmentModel model) {
+        this.model = model;
+        this.durations = new InfectiousPeriod[model.size()];
+        this.count = new int[model.size()];
+    }
+
+    public void setMetricsCollector(MetricsCollector metrics) {
+        this.metrics = metrics;
+    }
+
+    public void setScenarioFolder(String name) {
+        this.scenarioFolder = (name == null || name.isBlank()) ? "baseline" : name;
+    }
+
+    public String getScenarioFolder() { return this.scenarioFolder; }
+
+    public void setConsole(PrintStream console) {
+        this.console = (console == null) ? System.out : console;
+    }
+
+    public int getStep() { return step; }
+
+    public void setBinaryOutput(boolean binary) {
+        this.binaryOutput = binary;
+    }
+
+    public void setOutputDir(String dir) {
+        this.outputDir = (dir == null || dir.isBlank()) ? "runs" : dir;
+    }
+
+    public void setInterventions(List<Intervention> rules) {
+        this.interventions = rules;
+    }
+
+    public void setLiveMetrics(LiveMetrics.Run live) {
+        this.live = live;
+    }
+
+    public void setHeadless(boolean headless) {
+        this.headless = headless;
+        if (headless) this.console = new PrintStream(OutputStream.nullOutputStream());
+    }
+
+    /** Who infectious people contact (default: UniformMixing over the population). */
+    public void setContactSampler(ContactSampler sampler) {
+        this.contactSampler = sampler;
+    }
+
+    /** People currently in compartment 'code'. */
+    public int count(int code) { return count[code]; }
+
+    public void initialize(SimParams params) {
+        int n = params.populationSize;
+        if (contactSampler != null && contactSampler.size() >= 0 && contactSampler.size() != n) {
+            throw new IllegalArgumentException("contact sampler built for " + contactSampler.size() + " people, population has " + n);
+        }
+        this.params = params;
+        this.rng = new Random(params.seed);
+        this.step = 0;
+        this.contacts = (contactSampler != null) ? contactSampler : new UniformMixing(n);
+        for (int c = 0; c < durations.length; c++) {
+            CompartmentModel.Exit exit = model.exits[c];
+            durations[c] = (exit == null) ? rng -> InfectiousPeriod.FOREVER : exit.duration(params.gamma);
+        }
+        this.code = new byte[n];
+        this.due = new int[n];
+        Arrays.fill(due, -1);
+        Arrays.fill(count, 0);
+        count[0] = n;
+        this.infectious = new int[n];
+        this.infectiousPos = new int[n];
+        this.infectiousCount = 0;
+        this.wheel = new TimingWheel(64);
+        if (model.infectiousness[0] > 0) {
+            for (int id = 0; id < n; id++) addInfectious(id);
+        }
+
+        // seed the first infectious compartment, picked like Simulation's seeds
+        int seedCode = 0;
+        while (model.infectiousness[seedCode] == 0) seedCode++;
+        int[] pool = new int[n];
+        for (int id = 0; id < n; id++) pool[id] = id;
+        Population.shuffle(pool, rng);
+        int seeds = Math.min(Math.max(params.initialInfected, 0), n);
+        for (int i = 0; i < seeds; i++) move(pool[i], seedCode, 0);
+
+        if (this.metrics == null) {
+            this.metrics = new MetricsCollector();
+        }
+        setUpColumns();
+
+        this.plan = (interventions != null) ? new InterventionPlan(interventions)
+                                            : InterventionPlan.forScenario(scenarioFolder);
+        plan.beforeStep(host);
+
+        console.printf(
+            "Initialized (compartments %s): N=%d, I0=%d, beta=%.3f, gamma=%.3f, k=%d, maxSteps=%d, scenario=%s%n",
+            String.join("", model.names), n, params.initialInfected, params.beta, params.gamma,
+            params.contactsPerStep, params.maxSteps, scenarioFolder
+        );
+        printCounts();
+        record();
+    }
+
+    // S, I, R map onto the built-in columns; every other compartment gets its own column
+    private void setUpColumns() {
+        metricsColumn = new int[model.size()];
+        for (int c = 0; c < model.size(); c++) {
+            switch (model.names[c]) {
+                case "S": metricsColumn[c] = MetricsCollector.S; break;
+                case "I": metricsColumn[c] = MetricsCollector.I; break;
+                case "R": metricsColumn[c] = MetricsCollector.R; break;
+                default:  metricsColumn[c] = metrics.addColumn(model.names[c]);
+            }
+        }
+        row = new int[metrics.columnCount()];
+    }
+
+    public void step() {
+        plan.beforeStep(host);
+        int kEff = plan.contacts(host, params.contactsPerStep);
+
+        // infection draws against the start-of-step state; nothing moves until the apply
+        // phase, so the infectious list (deterministic for a seed) is read in place
+        int nInf = infectiousCount;
+        int infections = 0;
+        for (int i = 0; i < nInf; i++) {
+            int inf = infectious[i];
+            double p = params.beta * model.infectiousness[code[inf]];
+            int k = contacts.contactCount(inf, kEff, rng);
+            for (int c = 0; c < k; c++) {
+                int other = contacts.sample(inf, rng);
+                if (other < 0) continue;
+                if (model.infectTo[code[other]] >= 0 && rng.nextDouble() < p) {
+                    if (infections == newInfections.length) newInfections = Arrays.copyOf(newInfections, infections * 2);
+                    newInfections[infections++] = other;
+                }
+            }
+        }
+
+        // scheduled exits due this step (entries made stale by an infection are skipped)
+        int pending = wheel.dueNext();
+        if (dueNow.length < pending) dueNow = new int[Math.max(pending, dueNow.length * 2)];
+        int nDue = wheel.drain(step, dueNow);
+
+        // apply: infections first (someone hit twice moves once), then the due exits
+        for (int i = 0; i < infections; i++) {
+            int id = newInfections[i];
+            byte to = model.infectTo[code[id]];
+            if (to >= 0) move(id, to, step + 1);
+        }
+        for (int i = 0; i < nDue; i++) {
+            int id = dueNow[i];
+            if (due[id] != step) continue;
+            move(id, model.exits[code[id]].pick(rng), step + 1);
+        }
+
+        step++;
+        printCounts();
+        record();
+    }
+
+    public void run() {
+        while (step < params.maxSteps && active()) {
+            step();
+        }
+        console.println("Simulation finished.");
+        if (live != null) live.finished();
+
+        try {
+            if (binaryOutput) {
+                Path dir = Paths.get(outputDir, scenarioFolder);
+                RunArchive.append(dir, params.seed, metrics);
+                console.println("Wrote metrics to: " + dir.resolve(RunArchive.DATA_FILE) + " (seed " + params.seed + ")");
+                return;
+            }
+            Path out = Paths.get(outputDir, scenarioFolder, "run_seed" + params.seed + ".csv");
+            Files.createDirectories(out.getParent());
+            metrics.writeCsv(out);
+            console.println("Wrote metrics to: " + out);
+        } catch (IOException e) {
+            System.err.println("Failed to write CSV: " + e.getMessage());
+        }
+    }
+
+    /** @return true while someone is infectious or on the way to it (e.g. exposed) */
+    public boolean active() {
+        for (int c = 0; c < count.length; c++) {
+            if (model.active[c] && count[c] > 0) return true;
+        }
+        return false;
+    }
+
+    // move 'id' into compartment 'to' and schedule its exit; 'first' is the first step
+    // at whose end it may leave again
+    private void move(int id, int to, int first) {
+        int from = code[id];
+        boolean wasInf = model.infectiousness[from] > 0, isInf = model.infectiousness[to] > 0;
+        count[from]--;
+        count[to]++;
+        code[id] = (byte) to;
+        if (wasInf && !isInf) removeInfectious(id);
+        else if (!wasInf && isInf) addInfectious(id);
+
+        int d = durations[to].sample(rng);
+        long at = (long) first + d - 1;
+        if (d == InfectiousPeriod.FOREVER || at > Integer.MAX_VALUE) { // past the last int step: never
+            due[id] = -1;
+        } else {
+            due[id] = (int) at;
+            wheel.schedule(id, due[id]);
+        }
+    }
+
+    private void addInfectious(int id) {
+        infectiousPos[id] = infectiousCount;
+        infectious[infectiousCount++] = id;
+    }
+
+    private void removeInfectious(int id) {
+        int pos = infectiousPos[id];
+        int last = infectious[--infectiousCount];
+        infectious[pos] = last;
+        infectiousPos[last] = pos;
+    }
+
+    // scenario triggers see S = susceptible compartments, I = infectious ones, R = "R"
+    private long count(HealthState s) {
+        long total = 0;
+        for (int c = 0; c < count.length; c++) {
+            boolean in = (s == HealthState.S) ? model.infectTo[c] >= 0
+                       : (s == HealthState.I) ? model.infectiousness[c] > 0
+                       : model.names[c].equals("R");
+            if (in) total += count[c];
+        }
+        return total;
+    }
+
+    // same rounding as Simulation.vaccinate; vaccinated people go to "V" if the model has
+    // one, otherwise to "R"
+    private void vaccinate(double fraction) {
+        if (fraction <= 0) return;
+        int to = model.code("V");
+        if (to < 0) to = model.code("R");
+        if (to < 0) {
+            console.println("[" + scenarioFolder + "] Model has no V or R compartment; vaccination skipped.");
+            return;
+        }
+        int n = 0;
+        int[] susceptibles = new int[code.length];
+        for (int id = 0; id < code.length; id++) {
+            if (model.infectTo[code[id]] >= 0) susceptibles[n++] = id;
+        }
+        if (n == 0) return;
+        susceptibles = Arrays.copyOf(susceptibles, n);
+        Population.shuffle(susceptibles, rng);
+        int toVaccinate = Math.min((int) Math.round(fraction * n), n);
+        for (int i = 0; i < toVaccinate; i++) move(susceptibles[i], to, step);
+    }
+
+    private void record() {
+        Arrays.fill(row, 0);
+        row[MetricsCollector.STEP] = step;
+        for (int c = 0; c < count.length; c++) row[metricsColumn[c]] += count[c];
+        metrics.record(row);
+        if (live != null) live.step(step, row[MetricsCollector.S], row[MetricsCollector.I], row[MetricsCollector.R]);
+    }
+
+    private void printCounts() {
+        if (headless) return;
+        if (step == 0) {
+            console.printf("%-6s", "Step");
+            for (String name : model.names) console.printf(" %-10s", name);
+            console.println();
+            console.println("-".repeat(6 + 11 * model.size()));
+        }
+        console.printf("%-6d", step);
+        for (int c : count) console.printf(" %-10d", c);
+        console.println();
+    }
+}
@@ -0,0 +1,39 @@
+// src/ConcurrentBitSet.java
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size bit set that many threads can set bits in at once (lock-free CAS on 64-bit words).
+ * Used to merge infection targets found by parallel workers without duplicates.
+ */
+public class ConcurrentBitSet {
+    private final AtomicLongArray words;
+
+    public ConcurrentBitSet(int nbits) {
+        this.words = new AtomicLongArray((nbits + 63) >>> 6);
+    }
+
+    /** Set bit i. @return true if this call changed it from 0 to 1 */
+    public boolean set(int i) {
+        int w = i >>> 6;
+        long mask = 1L << i; // shift uses the low 6 bits
+        while (true) {
+            long old = words.get(w);
+            if ((old & mask) != 0) return false;
+            if (words.compareAndSet(w, old, old | mask)) return true;
+        }
+    }
+
+    public boolean get(int i) {
+        return (words.get(i >>> 6) & (1L << i)) != 0;
+    }
+
+    /** Clear bit i (only call when no other thread is writing). */
+    public void clear(int i) {
+        int w = i >>> 6;
+        words.set(w, words.get(w) & ~(1L << i));
+    }
+
+    public int capacity() {
+        return words.length() << 6;
+    }
+}
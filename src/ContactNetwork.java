@@ -0,0 +1,228 @@
+// src/ContactNetwork.java
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.random.RandomGenerator;
+import java.util.stream.IntStream;
+
+/**
+ * Undirected contact graph in compressed-sparse-row form: the neighbours of person u are
+ * neighbors[offsets[u] .. offsets[u+1]), sorted, without self-loops or duplicates.
+ * Each undirected edge is stored in both directions, at 4 bytes per entry, and offsets
+ * add 4 bytes per person: 10^8 edges take ~800 MB, plus 400 MB for 10^8 people.
+ *
+ * Generators split the work into blocks, each with its own random stream, and are run
+ * twice: once to count degrees and once to fill the arrays. Both passes replay the same
+ * edges, so no temporary edge list is needed and the result does not depend on threads.
+ */
+public class ContactNetwork implements ContactSampler {
+    private static final int BLOCK = 1 << 16; // people (or edges) per generator block
+
+    private final int[] offsets;
+    private final int[] neighbors;
+
+    private ContactNetwork(int[] offsets, int[] neighbors) {
+        this.offsets = offsets;
+        this.neighbors = neighbors;
+    }
+
+    public int size() { return offsets.length - 1; }
+
+    /** Number of undirected edges. */
+    public long edgeCount() { return offsets[offsets.length - 1] / 2; }
+
+    public int degree(int u) { return offsets[u + 1] - offsets[u]; }
+
+    public int neighbor(int u, int i) { return neighbors[offsets[u] + i]; }
+
+    /** Contact = a uniformly random neighbour; isolated people have no contacts. */
+    @Override
+    public int sample(int self, RandomGenerator rng) {
+        int lo = offsets[self];
+        int deg = offsets[self + 1] - lo;
+        return (deg == 0) ? -1 : neighbors[lo + rng.nextInt(deg)];
+    }
+
+    // ---------------------------------------------------------------- generators
+
+    /** Erdős–Rényi G(n, p) with p = avgDegree / (n - 1), using geometric skips (O(n + edges)). */
+    public static ContactNetwork erdosRenyi(int n, double avgDegree, long seed) {
+        double p = (n > 1) ? Math.min(1.0, Math.max(0.0, avgDegree / (n - 1))) : 0.0;
+        long[] seeds = blockSeeds(seed, blocks(n));
+        double logQ = Math.log1p(-p);
+        return build(n, seeds.length, (b, sink) -> {
+            if (p == 0.0) return;
+            SplittableRandom rnd = new SplittableRandom(seeds[b]);
+            int end = (int) Math.min(n, (long) (b + 1) * BLOCK);
+            for (int u = b * BLOCK; u < end; u++) {
+                // jump straight to the next v > u that gets an edge
+                long v = u;
+                while (true) {
+                    double skip = Math.floor(Math.log1p(-rnd.nextDouble()) / logQ);
+                    if (skip >= n - v - 1) break;
+                    v += 1 + (long) skip;
+                    sink.edge(u, (int) v);
+                }
+            }
+        });
+    }
+
+    /**
+     * Watts–Strogatz small world: a ring where everyone links to k/2 neighbours on each side,
+     * then each link's far end is rewired to a random person with probability 'rewire'.
+     * Rewired links that duplicate an existing one are dropped.
+     */
+    public static ContactNetwork wattsStrogatz(int n, int k, double rewire, long seed) {
+        int half = Math.max(0, Math.min(k / 2, (n - 1) / 2));
+        long[] seeds = blockSeeds(seed, blocks(n));
+        return build(n, seeds.length, (b, sink) -> {
+            SplittableRandom rnd = new SplittableRandom(seeds[b]);
+            int end = (int) Math.min(n, (long) (b + 1) * BLOCK);
+            for (int u = b * BLOCK; u < end; u++) {
+                for (int j = 1; j <= half; j++) {
+                    int v = (int) (((long) u + j) % n);
+                    if (rnd.nextDouble() < rewire) {
+                        do { v = rnd.nextInt(n); } while (v == u);
+                    }
+                    sink.edge(u, v);
+                }
+            }
+        });
+    }
+
+    /**
+     * Barabási–Albert preferential attachment, each new person bringing m links
+     * (Batagelj–Brandes: pick a uniformly random earlier edge endpoint).
+     * Attachment is inherently sequential, so the endpoint list is drawn on one thread;
+     * building the CSR arrays from it is parallel.
+     */
+    public static ContactNetwork barabasiAlbert(int n, int m, long seed) {
+        long slots = 2L * n * m;
+        if (slots > Integer.MAX_VALUE) throw new IllegalArgumentException("n*m too large: " + n + "*" + m);
+        int[] ends = new int[(int) slots];
+        SplittableRandom rnd = new SplittableRandom(seed);
+        for (int v = 0; v < n; v++) {
+            for (int i = 0; i < m; i++) {
+                int idx = 2 * (v * m + i);
+                ends[idx] = v;
+                ends[idx + 1] = ends[rnd.nextInt(idx + 1)]; // self-loops/duplicates are dropped in build
+            }
+        }
+        int edges = (int) (slots / 2);
+        return build(n, blocks(edges), (b, sink) -> {
+            int end = (int) Math.min(edges, (long) (b + 1) * BLOCK);
+            for (int e = b * BLOCK; e < end; e++) sink.edge(ends[2 * e], ends[2 * e + 1]);
+        });
+    }
+
+    /**
+     * Load an edge list: one "u v" pair per line (whitespace or comma separated),
+     * '#' starts a comment. People are numbered 0..n-1; pass n &lt;= 0 to use max id + 1.
+     */
+    public static ContactNetwork loadEdgeList(Path path, int n) throws IOException {
+        int[] us = new int[1024], vs = new int[1024];
+        int count = 0, maxId = -1;
+        try (BufferedReader br = Files.newBufferedReader(path)) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                int hash = line.indexOf('#');
+                if (hash >= 0) line = line.substring(0, hash);
+                line = line.trim();
+                if (line.isEmpty()) continue;
+                String[] t = line.split("[\\s,]+");
+                if (t.length < 2) continue;
+                int u = Integer.parseInt(t[0]);
+                int v = Integer.parseInt(t[1]);
+                if (count == us.length) {
+                    us = Arrays.copyOf(us, count * 2);
+                    vs = Arrays.copyOf(vs, count * 2);
+                }
+                us[count] = u;
+                vs[count] = v;
+                count++;
+                maxId = Math.max(maxId, Math.max(u, v));
+            }
+        }
+        int size = (n > 0) ? n : maxId + 1;
+        if (maxId >= size) throw new IOException("edge list mentions id " + maxId + " but n=" + size);
+        int[] fu = us, fv = vs;
+        int edges = count;
+        return build(size, blocks(edges), (b, sink) -> {
+            int end = (int) Math.min(edges, (long) (b + 1) * BLOCK);
+            for (int e = b * BLOCK; e < end; e++) sink.edge(fu[e], fv[e]);
+        });
+    }
+
+    // ---------------------------------------------------------------- CSR construction
+
+    /** Emits the edges of one block; must emit exactly the same edges every time it's called. */
+    interface EdgeBlocks { void emit(int block, EdgeSink sink); }
+
+    interface EdgeSink { void edge(int u, int v); }
+
+    static ContactNetwork build(int n, int blocks, EdgeBlocks gen) {
+        // pass 1: degrees
+        AtomicIntegerArray deg = new AtomicIntegerArray(n);
+        IntStream.range(0, blocks).parallel().forEach(b -> gen.emit(b, (u, v) -> {
+            if (u == v) return;
+            deg.incrementAndGet(u);
+            deg.incrementAndGet(v);
+        }));
+
+        int[] offsets = new int[n + 1];
+        long total = 0;
+        for (int u = 0; u < n; u++) {
+            offsets[u] = (int) total;
+            total += deg.get(u);
+            if (total > Integer.MAX_VALUE - 8) throw new IllegalStateException("too many edges for int offsets");
+        }
+        offsets[n] = (int) total;
+
+        // pass 2: fill, reusing 'deg' as each person's write cursor
+        int[] neighbors = new int[(int) total];
+        for (int u = 0; u < n; u++) deg.set(u, offsets[u]);
+        IntStream.range(0, blocks).parallel().forEach(b -> gen.emit(b, (u, v) -> {
+            if (u == v) return;
+            neighbors[deg.getAndIncrement(u)] = v;
+            neighbors[deg.getAndIncrement(v)] = u;
+        }));
+
+        // fill order depends on scheduling; sorting makes the layout deterministic
+        IntStream.range(0, n).parallel().forEach(u -> Arrays.sort(neighbors, offsets[u], offsets[u + 1]));
+        return new ContactNetwork(offsets, dropDuplicates(offsets, neighbors));
+    }
+
+    // compact sorted adjacency lists in place, rewriting offsets
+    private static int[] dropDuplicates(int[] offsets, int[] neighbors) {
+        int n = offsets.length - 1;
+        int w = 0;
+        for (int u = 0; u < n; u++) {
+            int lo = offsets[u], hi = offsets[u + 1];
+            offsets[u] = w;
+            int prev = -1;
+            for (int i = lo; i < hi; i++) {
+                if (neighbors[i] != prev) {
+                    prev = neighbors[i];
+                    neighbors[w++] = prev;
+                }
+            }
+        }
+        offsets[n] = w;
+        return (w == neighbors.length) ? neighbors : Arrays.copyOf(neighbors, w);
+    }
+
+    private static int blocks(long items) {
+        return (int) ((items + BLOCK - 1) / BLOCK);
+    }
+
+    private static long[] blockSeeds(long seed, int blocks) {
+        SplittableRandom root = new SplittableRandom(seed);
+        long[] seeds = new long[blocks];
+        for (int b = 0; b < blocks; b++) seeds[b] = root.nextLong();
+        return seeds;
+    }
+}
@@ -0,0 +1,24 @@
+// src/ContactSampler.java
+import java.util.random.RandomGenerator;
+
+/**
+ * Picks who an infected person contacts. Implementations must be safe to call from
+ * several threads at once (ParallelInfection does) as long as each thread has its own rng.
+ */
+public interface ContactSampler {
+    /** @return id of a contact for 'self', or -1 if self has nobody to contact */
+    int sample(int self, RandomGenerator rng);
+
+    /**
+     * How many contacts 'self' makes this step when the scenario allows kEff per person.
+     * Default: exactly kEff (no random draws).
+     */
+    default int contactCount(int self, int kEff, RandomGenerator rng) {
+        return kEff;
+    }
+
+    /** Number of people this sampler was built for, or -1 if it fits any population. */
+    default int size() {
+        return -1;
+    }
+}
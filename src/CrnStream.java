@@ -0,0 +1,38 @@
+// src/CrnStream.java
+import java.util.random.RandomGenerator;
+
+/**
+ * Common-random-numbers generator: a SplitMix64 stream that is re-keyed from
+ * (seed, step, person, purpose) before each use. A person's draws in a given step
+ * therefore don't depend on what everyone else did, so two scenario branches see
+ * the same contacts and recoveries wherever their states agree, and the difference
+ * between their outcomes has much lower variance than with independent runs.
+ *
+ * Re-keying allocates nothing; one instance per thread.
+ */
+final class CrnStream implements RandomGenerator {
+    // draw purposes, so e.g. a shorter contact list can't shift the recovery draw
+    static final int CONTACTS = 0, RECOVERY = 1, VACCINATION = 2;
+
+    private long state;
+
+    /** Restart the stream for one (seed, step, person, purpose) key. */
+    CrnStream reset(long seed, int step, int person, int purpose) {
+        long k = mix(seed ^ 0x9E3779B97F4A7C15L);
+        k = mix(k + step);
+        k = mix(k + ((long) person << 2 | purpose));
+        this.state = k;
+        return this;
+    }
+
+    @Override
+    public long nextLong() {
+        return mix(state += 0x9E3779B97F4A7C15L);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
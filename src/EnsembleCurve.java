@@ -0,0 +1,58 @@
+// src/EnsembleCurve.java
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Per-step ensemble of I across runs: mean plus 5/50/95th percentiles (exact up to
+ * P2Quantile.EXACT runs, P² estimates beyond). Memory is O(steps), independent of how
+ * many runs are added. A run that ended early counts as I=0 for the later steps, since
+ * its epidemic is over.
+ */
+public class EnsembleCurve {
+    private static final double[] PROBS = { 0.05, 0.50, 0.95 };
+
+    private final List<RunningStats> mean = new ArrayList<>();
+    private final List<P2Quantile[]> quantiles = new ArrayList<>();
+    private int runs;
+
+    /** Add one run's I series, where infected[t] is I at step t for t in [0, length). */
+    public void add(int[] infected, int length) {
+        // steps this run is the first to reach: earlier runs were already over (I=0)
+        while (mean.size() < length) {
+            RunningStats st = new RunningStats();
+            P2Quantile[] qs = new P2Quantile[PROBS.length];
+            for (int j = 0; j < qs.length; j++) qs[j] = new P2Quantile(PROBS[j]);
+            for (int r = 0; r < runs; r++) {
+                st.add(0);
+                for (P2Quantile q : qs) q.add(0);
+            }
+            mean.add(st);
+            quantiles.add(qs);
+        }
+        for (int t = 0; t < mean.size(); t++) {
+            int v = (t < length) ? infected[t] : 0;
+            mean.get(t).add(v);
+            for (P2Quantile q : quantiles.get(t)) q.add(v);
+        }
+        runs++;
+    }
+
+    public int runs() { return runs; }
+
+    public void writeCsv(Path out) throws IOException {
+        Files.createDirectories(out.toAbsolutePath().getParent());
+        try (BufferedWriter w = Files.newBufferedWriter(out)) {
+            w.write("step,meanI,p05I,p50I,p95I,n\n");
+            for (int t = 0; t < mean.size(); t++) {
+                P2Quantile[] qs = quantiles.get(t);
+                w.write(String.format(Locale.US, "%d,%.4f,%.2f,%.2f,%.2f,%d\n",
+                        t, mean.get(t).mean(), qs[0].value(), qs[1].value(), qs[2].value(), runs));
+            }
+        }
+    }
+}
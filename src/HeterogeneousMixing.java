@@ -0,0 +1,171 @@
+// src/HeterogeneousMixing.java
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * Well-mixed contacts with per-person activity and susceptibility weights.
+ *
+ * Activity a_i (rescaled to mean 1) sets both sides of mixing: person i makes about
+ * kEff * a_i contacts per step (stochastic rounding), and is picked as a contact with
+ * probability proportional to a_i, through an AliasTable, so super-spreaders are cheap
+ * at any population size. Susceptibility s_i (rescaled so the largest is 1) thins
+ * contacts: a contact with i only counts with probability s_i, so beta applies to the
+ * most susceptible people. With all weights equal this is UniformMixing.
+ *
+ * Interventions can change weights between steps with setActivity/setSusceptibility.
+ */
+public class HeterogeneousMixing implements ContactSampler {
+    private final double[] activity;       // mean-1 contact multipliers
+    private final double[] susceptibility; // max-1 acceptance probabilities, null = all 1
+    private final AliasTable targets;
+
+    /** @param susceptibility relative susceptibility per person, or null for everyone equal */
+    public HeterogeneousMixing(double[] activity, double[] susceptibility) {
+        if (susceptibility != null && susceptibility.length != activity.length) {
+            throw new IllegalArgumentException("activity has " + activity.length + " people, susceptibility "
+                    + susceptibility.length);
+        }
+        double mean = Arrays.stream(activity).sum() / Math.max(1, activity.length);
+        this.activity = new double[activity.length];
+        for (int i = 0; i < activity.length; i++) this.activity[i] = (mean > 0) ? activity[i] / mean : 0.0;
+        this.targets = new AliasTable(this.activity);
+
+        if (susceptibility == null) {
+            this.susceptibility = null;
+        } else {
+            double max = Arrays.stream(susceptibility).max().orElse(1.0);
+            this.susceptibility = new double[susceptibility.length];
+            for (int i = 0; i < susceptibility.length; i++) {
+                if (!(susceptibility[i] >= 0)) throw new IllegalArgumentException("susceptibility must be >= 0");
+                this.susceptibility[i] = (max > 0) ? susceptibility[i] / max : 0.0;
+            }
+        }
+    }
+
+    @Override
+    public int size() { return activity.length; }
+
+    public double activity(int id) { return activity[id]; }
+
+    public double susceptibility(int id) { return susceptibility == null ? 1.0 : susceptibility[id]; }
+
+    @Override
+    public int contactCount(int self, int kEff, RandomGenerator rng) {
+        double x = kEff * activity[self];
+        int c = (int) x;
+        double frac = x - c;
+        if (frac > 0 && rng.nextDouble() < frac) c++;
+        return c;
+    }
+
+    @Override
+    public int sample(int self, RandomGenerator rng) {
+        int p;
+        int tries = 0;
+        do {
+            p = targets.sample(rng);
+        } while (p == self && ++tries < 16); // nobody else active: give up
+        if (p < 0 || p == self) return -1;
+        if (susceptibility != null && rng.nextDouble() >= susceptibility[p]) return -1;
+        return p;
+    }
+
+    /**
+     * Set the activity of 'ids' to 'values', on the same mean-1 scale as activity(id)
+     * (e.g. activity(id) * 0.5 for a lockdown of those people). Values are not rescaled
+     * again. Rebuilds only the alias blocks they are in. Call between steps.
+     */
+    public void setActivity(int[] ids, double[] values) {
+        for (int j = 0; j < ids.length; j++) activity[ids[j]] = values[j];
+        targets.update(ids, values);
+    }
+
+    /** Set the (already 0..1) susceptibility of 'ids', e.g. after partial vaccination. */
+    public void setSusceptibility(int[] ids, double[] values) {
+        if (susceptibility == null) throw new IllegalStateException("created without susceptibility weights");
+        for (int j = 0; j < ids.length; j++) susceptibility[ids[j]] = Math.min(1.0, Math.max(0.0, values[j]));
+    }
+
+    // ---------------------------------------------------------------- weight generators
+
+    /** Pareto(alpha) weights with minimum 1 (heavy tail for alpha &lt;= 3; mean needs alpha &gt; 1). */
+    public static double[] powerLaw(int n, double alpha, long seed) {
+        SplittableRandom rnd = new SplittableRandom(seed);
+        double[] w = new double[n];
+        for (int i = 0; i < n; i++) w[i] = Math.pow(1.0 - rnd.nextDouble(), -1.0 / alpha);
+        return w;
+    }
+
+    /**
+     * Gamma(shape, 1/shape) weights (mean 1, variance 1/shape). Small shapes (e.g. 0.2)
+     * give the overdispersed offspring distribution seen in super-spreading data.
+     */
+    public static double[] gamma(int n, double shape, long seed) {
+        SplittableRandom rnd = new SplittableRandom(seed);
+        double[] w = new double[n];
+        for (int i = 0; i < n; i++) w[i] = gammaSample(rnd, shape) / shape;
+        return w;
+    }
+
+    // Marsaglia-Tsang; shapes below 1 use the x * U^(1/shape) boost
+    private static double gammaSample(SplittableRandom rnd, double shape) {
+        if (shape < 1) return gammaSample(rnd, shape + 1) * Math.pow(1.0 - rnd.nextDouble(), 1.0 / shape);
+        double d = shape - 1.0 / 3, c = 1.0 / Math.sqrt(9 * d);
+        while (true) {
+            double x, v;
+            do {
+                x = normal(rnd);
+                v = 1 + c * x;
+            } while (v <= 0);
+            v = v * v * v;
+            double u = rnd.nextDouble();
+            if (u < 1 - 0.0331 * x * x * x * x) return d * v;
+            if (Math.log(u) < 0.5 * x * x + d * (1 - v + Math.log(v))) return d * v;
+        }
+    }
+
+    private static double normal(SplittableRandom rnd) {
+        double u, v, s;
+        do {
+            u = 2 * rnd.nextDouble() - 1;
+            v = 2 * rnd.nextDouble() - 1;
+            s = u * u + v * v;
+        } while (s >= 1 || s == 0);
+        return u * Math.sqrt(-2 * Math.log(s) / s);
+    }
+
+    /**
+     * Load weights: one line per person in id order, "activity" or "activity,susceptibility"
+     * (whitespace or comma separated), '#' starts a comment. A missing susceptibility
+     * column means everyone is equally susceptible.
+     */
+    public static HeterogeneousMixing load(Path path) throws IOException {
+        double[] act = new double[1024], sus = new double[1024];
+        int n = 0;
+        boolean hasSus = false;
+        try (BufferedReader br = Files.newBufferedReader(path)) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                int hash = line.indexOf('#');
+                if (hash >= 0) line = line.substring(0, hash);
+                line = line.trim();
+                if (line.isEmpty()) continue;
+                String[] t = line.split("[\\s,]+");
+                if (n == act.length) {
+                    act = Arrays.copyOf(act, n * 2);
+                    sus = Arrays.copyOf(sus, n * 2);
+                }
+                act[n] = Double.parseDouble(t[0]);
+                sus[n] = (t.length > 1) ? Double.parseDouble(t[1]) : 1.0;
+                hasSus |= t.length > 1;
+                n++;
+            }
+        }
+        return new HeterogeneousMixing(Arrays.copyOf(act, n), hasSus ? Arrays.copyOf(sus, n) : null);
+    }
+}
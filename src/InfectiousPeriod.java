@@ -0,0 +1,48 @@
+// src/InfectiousPeriod.java
+import java.util.random.RandomGenerator;
+
+/**
+ * How many steps an infection lasts, drawn once when someone is infected
+ * (used by Simulation's event-scheduled recovery mode, see TimingWheel).
+ */
+public interface InfectiousPeriod {
+    /** Never recovers (gamma = 0). */
+    int FOREVER = Integer.MAX_VALUE;
+
+    /** @return steps until recovery, at least 1 (or FOREVER) */
+    int sample(RandomGenerator rng);
+
+    /**
+     * Same law as the classic per-step Bernoulli(gamma) recovery: P(d) = gamma (1-gamma)^(d-1).
+     * One uniform per infection by inversion instead of one per infected per step.
+     */
+    static InfectiousPeriod geometric(double gamma) {
+        if (gamma <= 0) return rng -> FOREVER;
+        if (gamma >= 1) return rng -> 1;
+        double logQ = Math.log1p(-gamma);
+        return rng -> {
+            double d = 1 + Math.floor(Math.log(1.0 - rng.nextDouble()) / logQ);
+            return d >= FOREVER ? FOREVER : (int) d;
+        };
+    }
+
+    /** Everyone is infectious for exactly 'steps' steps. */
+    static InfectiousPeriod fixed(int steps) {
+        int d = Math.max(1, steps);
+        return rng -> d;
+    }
+
+    /**
+     * Sum of 'stages' geometric stages with the given mean (a discrete Erlang, like an
+     * SEIR model with several I compartments): same mean as geometric(1/mean), less spread.
+     */
+    static InfectiousPeriod erlang(int stages, double mean) {
+        int k = Math.max(1, stages);
+        InfectiousPeriod stage = geometric(Math.min(1.0, k / Math.max(mean, k)));
+        return rng -> {
+            long sum = 0;
+            for (int i = 0; i < k; i++) sum += stage.sample(rng);
+            return (int) Math.min(sum, FOREVER);
+        };
+    }
+}
@@ -0,0 +1,40 @@
+// src/Intervention.java
+
+/**
+ * One rule of a scenario (vaccinate, cut contacts, ...). Interventions are grouped into an
+ * InterventionPlan, usually loaded from scenarios/&lt;name&gt;.scenario, and work with either
+ * engine through the Host view.
+ */
+public interface Intervention {
+
+    /** What an intervention can see and change; implemented by every engine. */
+    interface Host {
+        /** Current step (0 during initialize). */
+        int time();
+        long count(HealthState s);
+        long size();
+        /** Move round(fraction * #susceptible) random susceptibles to Recovered. */
+        void vaccinate(double fraction);
+        String scenario();
+        /** Print a line to the run's console. */
+        void log(String message);
+    }
+
+    /** Called when the plan is attached (initialize/fork) and at the start of every step. */
+    default void beforeStep(Host host) { }
+
+    /**
+     * true once beforeStep() has nothing left to do, so the plan can stop calling it
+     * (rules that only change contacts return true from the start).
+     */
+    default boolean finished() { return false; }
+
+    /** @return contacts per infected person this step, given k after earlier interventions */
+    default int contacts(Host host, int k) { return k; }
+
+    /** true if contacts() can change k (only those are called every step). */
+    default boolean changesContacts() { return false; }
+
+    /** A copy with fresh per-run state (one-shot flags); stateless rules can return this. */
+    default Intervention fresh() { return this; }
+}
@@ -0,0 +1,294 @@
+// src/InterventionPlan.java
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A scenario's interventions, compiled into two fixed arrays: actions still waiting to
+ * fire (checked at the start of each step while any are pending) and contact rules
+ * (applied in order to contactsPerStep every step). Triggers only read the engine's O(1)
+ * counters, so a plan costs a few comparisons per step.
+ *
+ * Scenario files live in scenarios/&lt;name&gt;.scenario (directory can be changed with
+ * -Dsim.scenarios=DIR), one rule per line, '#' starts a comment:
+ *
+ *   vaccinate 0.30                               # at attach time (t=0, or the fork step)
+ *   vaccinate 0.10 at 20                         # = when step &gt;= 20
+ *   vaccinate 0.10 when prevalence &gt; 0.02       # once, the first step the trigger holds
+ *   reduce-contacts 0.5 when prevalence &gt; 0.05  # k = max(1, round(0.5 k)) while it holds
+ *   reduce-contacts 0.25 min 0 when step &gt;= 10 and infected &gt;= 100
+ *
+ * Trigger terms compare prevalence (I/N), infected, susceptible, recovered or step with
+ * &gt;, &gt;=, &lt;, &lt;= or == and can be joined with "and". The shipped scenarios
+ * (baseline, vaccine30, quarantine50, combo) fall back to built-in copies of their files
+ * when the file is missing; any other scenario without a file is an error.
+ */
+public final class InterventionPlan {
+    private static final Map<String, List<Intervention>> CACHE = new ConcurrentHashMap<>();
+
+    // rules of the shipped scenarios, used when scenarios/<name>.scenario is missing
+    private static final Map<String, List<String>> BUILT_IN = Map.of(
+            "baseline", List.of(),
+            "vaccine30", List.of("vaccinate 0.30"),
+            "quarantine50", List.of("reduce-contacts 0.5 when prevalence > 0.05"),
+            "combo", List.of("vaccinate 0.20", "reduce-contacts 0.5 when prevalence > 0.05"));
+
+    private final Intervention[] actions;   // every action, in file order
+    private final Intervention[] pending;   // actions not finished yet
+    private int nPending;
+    private final Intervention[] contactRules;
+
+    public InterventionPlan(List<Intervention> rules) {
+        List<Intervention> actions = new ArrayList<>(), contacts = new ArrayList<>();
+        for (Intervention r : rules) {
+            Intervention f = r.fresh();
+            if (!f.finished()) actions.add(f);
+            if (f.changesContacts()) contacts.add(f);
+        }
+        this.actions = actions.toArray(new Intervention[0]);
+        this.pending = this.actions.clone();
+        this.nPending = pending.length;
+        this.contactRules = contacts.toArray(new Intervention[0]);
+    }
+
+    /** Plan for a scenario name, from its file (parsed once per JVM). */
+    public static InterventionPlan forScenario(String scenario) {
+        return new InterventionPlan(CACHE.computeIfAbsent(scenario, InterventionPlan::loadRules));
+    }
+
+    /**
+     * The scenario's rules as text with comments and blank lines dropped, so two names with
+     * the same rules, or a reworded comment, compare equal.
+     */
+    public static String definition(String scenario) {
+        StringBuilder sb = new StringBuilder();
+        for (String line : lines(scenario)) {
+            int hash = line.indexOf('#');
+            if (hash >= 0) line = line.substring(0, hash);
+            line = line.trim().replaceAll("\\s+", " ");
+            if (!line.isEmpty()) sb.append(line).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static Path scenarioFile(String scenario) {
+        return Paths.get(System.getProperty("sim.scenarios", "scenarios"), scenario + ".scenario");
+    }
+
+    // the scenario file's lines, else the built-in rules of a shipped scenario
+    private static List<String> lines(String scenario) {
+        Path file = scenarioFile(scenario);
+        if (Files.exists(file)) {
+            try {
+                return Files.readAllLines(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        List<String> builtIn = BUILT_IN.get(scenario);
+        if (builtIn == null) throw new IllegalArgumentException("no scenario file " + file.toAbsolutePath());
+        return builtIn;
+    }
+
+    private static List<Intervention> loadRules(String scenario) {
+        Path file = scenarioFile(scenario);
+        return parse(lines(scenario), Files.exists(file) ? file.toString() : "built-in " + scenario);
+    }
+
+    /** Parse scenario lines (see class comment). 'source' is only used in error messages. */
+    public static List<Intervention> parse(List<String> lines, String source) {
+        List<Intervention> rules = new ArrayList<>();
+        for (int n = 0; n < lines.size(); n++) {
+            String line = lines.get(n);
+            int hash = line.indexOf('#');
+            if (hash >= 0) line = line.substring(0, hash);
+            line = line.trim();
+            if (line.isEmpty()) continue;
+            try {
+                rules.add(parseRule(line.split("\\s+")));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException(source + ":" + (n + 1) + ": " + e.getMessage() + " in '" + line + "'", e);
+            }
+        }
+        return rules;
+    }
+
+    private static Intervention parseRule(String[] t) {
+        int i = 2;
+        switch (t[0]) {
+            case "vaccinate": {
+                double fraction = Double.parseDouble(t[1]);
+                Trigger when = Trigger.ALWAYS;
+                if (i < t.length && t[i].equals("at")) {
+                    when = Trigger.compare("step", ">=", t[i + 1]);
+                    i += 2;
+                } else if (i < t.length && t[i].equals("when")) {
+                    when = Trigger.parse(Arrays.copyOfRange(t, i + 1, t.length));
+                    i = t.length;
+                }
+                if (i != t.length) throw new IllegalArgumentException("unexpected '" + t[i] + "'");
+                return new Vaccination(fraction, when);
+            }
+            case "reduce-contacts": {
+                double factor = Double.parseDouble(t[1]);
+                int min = 1;
+                Trigger when = Trigger.ALWAYS;
+                while (i < t.length) {
+                    if (t[i].equals("min")) {
+                        min = Integer.parseInt(t[i + 1]);
+                        i += 2;
+                    } else if (t[i].equals("when")) {
+                        when = Trigger.parse(Arrays.copyOfRange(t, i + 1, t.length));
+                        i = t.length;
+                    } else {
+                        throw new IllegalArgumentException("unexpected '" + t[i] + "'");
+                    }
+                }
+                return new ContactReduction(factor, min, when);
+            }
+            default:
+                throw new IllegalArgumentException("unknown intervention '" + t[0] + "'");
+        }
+    }
+
+    /** Fire actions that are due (call once at attach, then at the start of every step). */
+    public void beforeStep(Intervention.Host host) {
+        if (nPending == 0) return;
+        int keep = 0;
+        for (int i = 0; i < nPending; i++) {
+            Intervention a = pending[i];
+            a.beforeStep(host);
+            if (!a.finished()) pending[keep++] = a;
+        }
+        nPending = keep;
+    }
+
+    /** Indexes (in rule order among actions) of the actions that have finished, for checkpoints. */
+    int[] finishedActions() {
+        int[] out = new int[actions.length];
+        int n = 0;
+        for (int i = 0; i < actions.length; i++) if (actions[i].finished()) out[n++] = i;
+        return Arrays.copyOf(out, n);
+    }
+
+    /** Drop actions that already fired before a checkpoint (without running them again). */
+    void skipActions(int[] finished) {
+        List<Intervention> skip = new ArrayList<>();
+        for (int i : finished) skip.add(actions[i]);
+        int keep = 0;
+        for (int i = 0; i < nPending; i++) {
+            if (!skip.contains(pending[i])) pending[keep++] = pending[i];
+        }
+        nPending = keep;
+    }
+
+    /** Drop every pending action (resuming a checkpoint that predates finishedActions). */
+    void skipAllActions() {
+        nPending = 0;
+    }
+
+    /** Contacts per infected this step after every contact rule. */
+    public int contacts(Intervention.Host host, int k) {
+        for (Intervention r : contactRules) k = r.contacts(host, k);
+        return k;
+    }
+
+    // ---------------------------------------------------------------- built-in rules
+
+    /** Condition on the host's counters. */
+    public interface Trigger {
+        Trigger ALWAYS = h -> true;
+
+        boolean test(Intervention.Host h);
+
+        /** "prevalence > 0.05 and step >= 10" split into words. */
+        static Trigger parse(String[] words) {
+            if (words.length == 0) throw new IllegalArgumentException("empty trigger");
+            Trigger t = null;
+            for (int i = 0; i < words.length; i += 4) {
+                if (i > 0 && !words[i - 1].equals("and")) throw new IllegalArgumentException("expected 'and'");
+                if (i + 2 >= words.length) throw new IllegalArgumentException("incomplete trigger");
+                Trigger term = compare(words[i], words[i + 1], words[i + 2]);
+                Trigger prev = t;
+                t = (prev == null) ? term : h -> prev.test(h) && term.test(h);
+            }
+            return t;
+        }
+
+        static Trigger compare(String quantity, String op, String value) {
+            double v = Double.parseDouble(value);
+            java.util.function.ToDoubleFunction<Intervention.Host> q;
+            switch (quantity) {
+                case "prevalence":  q = h -> (double) h.count(HealthState.I) / h.size(); break;
+                case "infected":    q = h -> h.count(HealthState.I); break;
+                case "susceptible": q = h -> h.count(HealthState.S); break;
+                case "recovered":   q = h -> h.count(HealthState.R); break;
+                case "step":        q = h -> h.time(); break;
+                default: throw new IllegalArgumentException("unknown quantity '" + quantity + "'");
+            }
+            switch (op) {
+                case ">":  return h -> q.applyAsDouble(h) > v;
+                case ">=": return h -> q.applyAsDouble(h) >= v;
+                case "<":  return h -> q.applyAsDouble(h) < v;
+                case "<=": return h -> q.applyAsDouble(h) <= v;
+                case "==": return h -> q.applyAsDouble(h) == v;
+                default: throw new IllegalArgumentException("unknown comparison '" + op + "'");
+            }
+        }
+    }
+
+    /** Vaccinate a fraction of the current susceptibles once, the first time 'when' holds. */
+    public static final class Vaccination implements Intervention {
+        private final double fraction;
+        private final Trigger when;
+        private boolean done;
+
+        public Vaccination(double fraction, Trigger when) {
+            this.fraction = fraction;
+            this.when = when;
+        }
+
+        @Override
+        public void beforeStep(Host host) {
+            if (done || !when.test(host)) return;
+            host.vaccinate(fraction);
+            done = true;
+            String pct = BigDecimal.valueOf(fraction).movePointRight(2).stripTrailingZeros().toPlainString();
+            host.log("[" + host.scenario() + "] Applied " + pct + "% vaccination at t=" + host.time() + ".");
+        }
+
+        @Override public boolean finished() { return done; }
+
+        @Override public Intervention fresh() { return new Vaccination(fraction, when); }
+    }
+
+    /** k = max(min, round(factor * k)) on every step where 'when' holds. */
+    public static final class ContactReduction implements Intervention {
+        private final double factor;
+        private final int min;
+        private final Trigger when;
+
+        public ContactReduction(double factor, int min, Trigger when) {
+            this.factor = factor;
+            this.min = min;
+            this.when = when;
+        }
+
+        @Override
+        public int contacts(Host host, int k) {
+            return when.test(host) ? Math.max(min, (int) Math.round(factor * k)) : k;
+        }
+
+        @Override public boolean finished() { return true; } // no per-step action
+
+        @Override public boolean changesContacts() { return true; }
+    }
+}
@@ -0,0 +1,132 @@
+// src/JobQueue.java
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * File-lock work queue shared by any number of BatchRunner processes (--queue).
+ *
+ * Every worker builds the same job list. A job is claimed by taking an exclusive lock on
+ * &lt;root&gt;/.queue/&lt;job&gt;.lock, which is held while the job runs. The OS drops
+ * the lock if the process dies, so a crashed worker's job becomes claimable again with
+ * no stale-claim cleanup. A job counts as done once its outputs exist. Outputs are
+ * written to a private staging folder first and then moved into place atomically, so a
+ * crash never leaves a half-written run file that would later be taken as done.
+ */
+final class JobQueue {
+    static final String DIR = ".queue";
+
+    // FileChannel locks belong to the whole JVM, so threads of one worker also check here
+    private static final Set<Path> HELD = ConcurrentHashMap.newKeySet();
+
+    private final Path root;
+    private final Path queueDir;
+
+    /** @param root output root shared by the workers (e.g. "runs") */
+    JobQueue(Path root) throws IOException {
+        this.root = root;
+        this.queueDir = root.resolve(DIR);
+        Files.createDirectories(queueDir);
+    }
+
+    /** A claimed job: stage outputs in folder(), publish() them, then close() to release. */
+    final class Claim implements AutoCloseable {
+        private final String job;
+        private final Path lockFile;
+        private final FileChannel channel;
+        private final FileLock lock;
+        private final Path staging;
+
+        private Claim(String job, Path lockFile, FileChannel channel, FileLock lock) {
+            this.job = job;
+            this.lockFile = lockFile;
+            this.channel = channel;
+            this.lock = lock;
+            this.staging = queueDir.resolve("work-" + job);
+        }
+
+        /** Private output root for this job (use as the engine's output dir). */
+        Path folder() throws IOException {
+            Files.createDirectories(staging);
+            return staging;
+        }
+
+        /**
+         * Move every staged file to the same relative path under the root, atomically
+         * where the file system allows. Files are moved in the given order, so pass the
+         * file that marks the job as done last.
+         */
+        void publish(Path... relativeFiles) throws IOException {
+            for (Path rel : relativeFiles) {
+                Path target = root.resolve(rel);
+                Files.createDirectories(target.toAbsolutePath().getParent());
+                try {
+                    Files.move(staging.resolve(rel), target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(staging.resolve(rel), target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                deleteTree(staging);
+            } finally {
+                try {
+                    lock.release();
+                    channel.close();
+                } finally {
+                    HELD.remove(lockFile);
+                }
+            }
+        }
+
+        @Override
+        public String toString() { return job; }
+    }
+
+    /**
+     * Try to claim 'job' (a file-name-safe id such as "baseline_seed42").
+     * @return the claim, or null if another worker or thread holds it
+     */
+    Claim tryClaim(String job) throws IOException {
+        Path lockFile = queueDir.resolve(job + ".lock").toAbsolutePath();
+        if (!HELD.add(lockFile)) return null;
+        FileChannel ch = null;
+        try {
+            ch = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock lock = ch.tryLock();
+            if (lock == null) {
+                ch.close();
+                HELD.remove(lockFile);
+                return null;
+            }
+            Claim claim = new Claim(job, lockFile, ch, lock);
+            deleteTree(claim.staging); // leftovers from a worker that died on this job
+            return claim;
+        } catch (IOException | OverlappingFileLockException e) {
+            if (ch != null) ch.close();
+            HELD.remove(lockFile);
+            if (e instanceof IOException) throw (IOException) e;
+            return null;
+        }
+    }
+
+    private static void deleteTree(Path dir) throws IOException {
+        if (!Files.exists(dir)) return;
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) Files.deleteIfExists(p);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+// src/LiveMetrics.java
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free ring buffer of live run events (per-step counts, run start/finish, batch
+ * progress) for LiveServer's /events stream.
+ *
+ * Any number of simulation threads publish: a publisher takes the next sequence number
+ * with one getAndIncrement and writes the primitive fields of slot (seq mod capacity),
+ * then stamps the slot with its sequence. It never waits for readers. Each reader keeps
+ * its own position and checks the stamp before and after copying a slot (a seqlock), so
+ * a reader that falls more than 'capacity' events behind skips to the oldest event still
+ * in the ring instead of slowing anyone down.
+ */
+final class LiveMetrics {
+    static final int STEP = 0, STARTED = 1, FINISHED = 2, PROGRESS = 3;
+    private static final long WRITING = -1;
+
+    private final int mask;
+    private final AtomicLong next = new AtomicLong();
+    private final AtomicLongArray stamp;  // sequence stored in each slot, WRITING while being filled
+    private final int[] type, run, step;
+    private final long[] s, i, r;         // counts; PROGRESS uses s = done, i = total
+    private final double[] rate;          // steps per second
+
+    // run names by id, already escaped for JSON; only touched when a run is opened (never in the step loop)
+    private final List<String> names = new ArrayList<>();
+
+    /** @param capacity events kept for slow readers (rounded up to a power of two) */
+    LiveMetrics(int capacity) {
+        int n = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.mask = n - 1;
+        this.stamp = new AtomicLongArray(n);
+        for (int k = 0; k < n; k++) stamp.set(k, WRITING);
+        this.type = new int[n];
+        this.run = new int[n];
+        this.step = new int[n];
+        this.s = new long[n];
+        this.i = new long[n];
+        this.r = new long[n];
+        this.rate = new double[n];
+    }
+
+    /** Publisher handle for one run; use from the run's own thread. */
+    final class Run {
+        private final int id;
+        private long lastNanos;
+        private int lastStep = -1;
+        private double stepsPerSec;
+
+        private Run(int id) { this.id = id; }
+
+        /** Counts after 'step' (call once per recorded step). */
+        void step(int step, long S, long I, long R) {
+            long now = System.nanoTime();
+            if (lastStep >= 0 && step > lastStep) {
+                double inst = (step - lastStep) * 1e9 / Math.max(1, now - lastNanos);
+                stepsPerSec = (stepsPerSec == 0) ? inst : 0.9 * stepsPerSec + 0.1 * inst; // smoothed
+            }
+            lastNanos = now;
+            lastStep = step;
+            publish(STEP, id, step, S, I, R, stepsPerSec);
+        }
+
+        void finished() {
+            publish(FINISHED, id, lastStep, 0, 0, 0, stepsPerSec);
+        }
+    }
+
+    /** Register a run (e.g. "baseline/seed42") and announce it. */
+    Run open(String name) {
+        int id;
+        synchronized (names) {
+            id = names.size();
+            names.add(jsonEscape(name));
+        }
+        publish(STARTED, id, 0, 0, 0, 0, 0);
+        return new Run(id);
+    }
+
+    /** Batch progress: 'done' of 'total' jobs finished. */
+    void progress(long done, long total) {
+        publish(PROGRESS, -1, 0, done, total, 0, 0);
+    }
+
+    private void publish(int t, int id, int st, long a, long b, long c, double sps) {
+        long seq = next.getAndIncrement();
+        int k = (int) seq & mask;
+        stamp.set(k, WRITING);
+        VarHandle.storeStoreFence(); // the field stores below must not become visible before WRITING
+        type[k] = t; run[k] = id; step[k] = st;
+        s[k] = a; i[k] = b; r[k] = c; rate[k] = sps;
+        stamp.setRelease(k, seq);
+    }
+
+    /** @return sequence number the next published event will get */
+    long head() { return next.get(); }
+
+    /**
+     * Append events from 'from' on as SSE messages to 'out' (at most 'max' events).
+     * @return the position to continue from (skips ahead if the reader was overrun)
+     */
+    long drain(long from, int max, StringBuilder out) {
+        long head = next.get();
+        if (head - from > mask + 1) from = head - (mask + 1); // lapped: resume at the oldest kept
+        int n = 0;
+        while (from < head && n < max) {
+            int k = (int) from & mask;
+            long before = stamp.getAcquire(k);
+            if (before < from) break;          // not stamped yet: the writer is still on it
+            int t = type[k], id = run[k], st = step[k];
+            long a = s[k], b = i[k], c = r[k];
+            double sps = rate[k];
+            VarHandle.acquireFence();
+            if (before != from || stamp.get(k) != from) { from++; continue; } // overwritten meanwhile
+            format(out, t, id, st, a, b, c, sps);
+            from++;
+            n++;
+        }
+        return from;
+    }
+
+    private static String jsonEscape(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int c = 0; c < s.length(); c++) {
+            char ch = s.charAt(c);
+            if (ch == '"' || ch == '\\') sb.append('\\').append(ch);
+            else if (ch < 0x20) sb.append(String.format("\\u%04x", (int) ch));
+            else sb.append(ch);
+        }
+        return sb.toString();
+    }
+
+    private void format(StringBuilder out, int t, int id, int st, long a, long b, long c, double sps) {
+        String name;
+        synchronized (names) {
+            name = (id >= 0 && id < names.size()) ? names.get(id) : "";
+        }
+        switch (t) {
+            case STEP:
+                out.append("event: step\ndata: ").append(String.format(Locale.US,
+                    "{\"run\":\"%s\",\"step\":%d,\"S\":%d,\"I\":%d,\"R\":%d,\"stepsPerSec\":%.1f}", name, st, a, b, c, sps));
+                break;
+            case STARTED:
+                out.append("event: started\ndata: {\"run\":\"").append(name).append("\"}");
+                break;
+            case FINISHED:
+                out.append("event: finished\ndata: ").append(String.format(Locale.US,
+                    "{\"run\":\"%s\",\"steps\":%d,\"stepsPerSec\":%.1f}", name, st, sps));
+                break;
+            default:
+                out.append("event: progress\ndata: {\"done\":").append(a).append(",\"total\":").append(b).append('}');
+        }
+        out.append("\n\n");
+    }
+}
@@ -0,0 +1,90 @@
+// src/LiveServer.java
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local HTTP endpoint (JDK built-in server, bound to the loopback address) that streams
+ * LiveMetrics as Server-Sent Events:
+ *
+ *   curl -N http://localhost:8080/events
+ *
+ * Events: "started", "step" (run, step, S, I, R, stepsPerSec), "finished", and
+ * "progress" (done/total jobs of a batch). A client sees events from the moment it
+ * connects. Every client gets its own server thread that polls the ring buffer, so a
+ * slow client only delays itself; the simulation threads never wait for the network.
+ */
+final class LiveServer implements AutoCloseable {
+    private static final int POLL_MILLIS = 100, KEEPALIVE_MILLIS = 15_000, BATCH = 512;
+
+    private final LiveMetrics live;
+    private final HttpServer server;
+    private final ExecutorService clients = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "live-sse");
+        t.setDaemon(true);
+        return t;
+    });
+
+    LiveServer(LiveMetrics live, int port) throws IOException {
+        this.live = live;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/events", this::events);
+        server.createContext("/", this::index);
+        server.setExecutor(clients);
+        server.start();
+    }
+
+    int port() { return server.getAddress().getPort(); }
+
+    private void index(HttpExchange ex) throws IOException {
+        byte[] body = "Live simulation metrics: GET /events (text/event-stream)\n".getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        ex.sendResponseHeaders(200, body.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private void events(HttpExchange ex) throws IOException {
+        ex.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+        ex.getResponseHeaders().set("Cache-Control", "no-cache");
+        ex.sendResponseHeaders(200, 0); // chunked, open-ended
+        long pos = live.head();
+        long lastWrite = System.currentTimeMillis();
+        StringBuilder sb = new StringBuilder();
+        try (OutputStream out = ex.getResponseBody()) {
+            while (!Thread.currentThread().isInterrupted()) {
+                sb.setLength(0);
+                pos = live.drain(pos, BATCH, sb);
+                long now = System.currentTimeMillis();
+                if (sb.length() == 0 && now - lastWrite >= KEEPALIVE_MILLIS) sb.append(": keep-alive\n\n");
+                if (sb.length() > 0) {
+                    out.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                    lastWrite = now;
+                } else {
+                    Thread.sleep(POLL_MILLIS);
+                }
+            }
+        } catch (IOException e) {
+            // client went away
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            ex.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        clients.shutdownNow();
+    }
+}
@@ -3,7 +3,11 @@ import metrics.MetricsCollector;
 import java.nio.file.Path;
 
 public class Main {
+    // --cache: reuse finished runs from the ResultCache (runs/.cache) instead of re-simulating
+    private static ResultCache cache;
+
     public static void main(String[] args) throws Exception {
+        if (java.util.Arrays.asList(args).contains("--cache")) cache = ResultCache.fromProperties();
 
         // --- Common parameters (can tweak later) ---
         int N = 50;
@@ -32,12 +36,22 @@ public class Main {
         // Parameters for this run
         SimParams params = new SimParams(N, I0, beta, gamma, k, maxSteps, seed);
 
-        MetricsCollector mc = new MetricsCollector();
-        Simulation sim = new Simulation();
-        sim.setMetricsCollector(mc);
-        sim.setScenarioFolder(scenario);   // <-- key line
-        sim.initialize(params);
-        sim.run();
+        String key = (cache != null) ? ResultCache.key(params, scenario, "agent") : null;
+        MetricsCollector mc = (cache != null) ? cache.get(key) : null;
+        if (mc != null) {
+            Path run = Path.of("runs", scenario, "run_seed" + seed + ".csv");
+            java.nio.file.Files.createDirectories(run.getParent());
+            mc.writeCsv(run);
+            System.out.println("Cache hit: " + scenario + " seed " + seed + ", wrote " + run);
+        } else {
+            mc = new MetricsCollector();
+            Simulation sim = new Simulation();
+            sim.setMetricsCollector(mc);
+            sim.setScenarioFolder(scenario);   // <-- key line
+            sim.initialize(params);
+            sim.run();
+            if (cache != null) cache.put(key, mc);
+        }
 
         // (optional) extra export for quick viewing
         Path out = Path.of("runs", scenario, "metrics_summary.csv");
@@ -0,0 +1,300 @@
+// src/MetapopulationSimulation.java
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+import metrics.MetricsCollector;
+
+/**
+ * Many regions (cities), each an ordinary Simulation with its own SimParams, stepped in
+ * parallel on a work-stealing ForkJoinPool and coupled by a sparse travel matrix.
+ *
+ * Coupling is by infection pressure, exchanged in batches at step boundaries: after every
+ * region has stepped, each infectious person in region i makes rate(i,j) extra contacts
+ * in region j per local contact, so region i sends
+ *   Binomial(I_i * kEff_i, rate(i,j) * beta_i)
+ * transmitting contacts to j, and each one infects a uniformly random person there if
+ * they are susceptible. Every region has its own coupling rng next to the Simulation's,
+ * and the phases run in a fixed order, so results don't depend on the thread count.
+ *
+ * Each region keeps its own MetricsCollector series, recorded after the imports so a
+ * step's row (and its newInfections) includes them; the global series (summed S/I/R,
+ * so at most Integer.MAX_VALUE people in all) goes to a separate collector. Output: &lt;dir&gt;/&lt;scenario&gt;/metapop_seed&lt;seed&gt;/
+ * global.csv plus region_&lt;r&gt;.csv per region.
+ *
+ *   java -cp bin MetapopulationSimulation --regions 2000 --size 5000 --links 4 --travel 0.02 --threads 0
+ */
+public class MetapopulationSimulation {
+
+    /** Sparse travel matrix: contacts per local contact that people of 'from' make in 'to'. */
+    public static final class Travel {
+        final int[][] dest;
+        final double[][] rate;
+
+        public Travel(int regions) {
+            dest = new int[regions][0];
+            rate = new double[regions][0];
+        }
+
+        public void add(int from, int to, double r) {
+            if (from == to || r <= 0) return;
+            int n = dest[from].length;
+            dest[from] = Arrays.copyOf(dest[from], n + 1);
+            rate[from] = Arrays.copyOf(rate[from], n + 1);
+            dest[from][n] = to;
+            rate[from][n] = r;
+        }
+
+        /** "from to rate" per line ('#' comments), region ids 0-based. */
+        public static Travel load(Path file, int regions) throws IOException {
+            Travel t = new Travel(regions);
+            for (String line : Files.readAllLines(file)) {
+                int hash = line.indexOf('#');
+                if (hash >= 0) line = line.substring(0, hash);
+                line = line.trim();
+                if (line.isEmpty()) continue;
+                String[] f = line.split("[\\s,]+");
+                t.add(Integer.parseInt(f[0]), Integer.parseInt(f[1]), Double.parseDouble(f[2]));
+            }
+            return t;
+        }
+
+        /**
+         * Ring plus random long-range links: every region sends 'total' contacts per local
+         * contact, split over its two ring neighbours and 'links' random regions.
+         */
+        public static Travel random(int regions, int links, double total, long seed) {
+            Travel t = new Travel(regions);
+            if (regions < 2) return t;
+            SplittableRandom rng = new SplittableRandom(seed);
+            double each = total / (2 + links);
+            for (int i = 0; i < regions; i++) {
+                t.add(i, (i + 1) % regions, each);
+                t.add(i, (i + regions - 1) % regions, each);
+                for (int l = 0; l < links; l++) t.add(i, rng.nextInt(regions), each);
+            }
+            return t;
+        }
+    }
+
+    // one task per block of regions; ForkJoinPool steals blocks from busy workers
+    private static final class Range extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int from, to, grain;
+        private final IntConsumer body;
+
+        Range(int from, int to, int grain, IntConsumer body) {
+            this.from = from; this.to = to; this.grain = grain; this.body = body;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                for (int r = from; r < to; r++) body.accept(r);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Range(from, mid, grain, body), new Range(mid, to, grain, body));
+        }
+    }
+
+    private final List<SimParams> params;
+    private final Travel travel;
+    private final String scenario;
+    private final ForkJoinPool pool;
+    private final int grain;
+
+    private Simulation[] regions;
+    private SplittableRandom[] couplingRng;
+    private long[][] exported;          // per source region, per travel link
+    private int[][] inSource, inLink;   // incoming links of each region
+    private final MetricsCollector global = new MetricsCollector();
+    private int step;
+    private String outputDir = "runs";
+
+    /** @param threads ForkJoinPool parallelism (0 = one per core) */
+    public MetapopulationSimulation(List<SimParams> regionParams, Travel travel, String scenario, int threads) {
+        if (travel.dest.length != regionParams.size()) {
+            throw new IllegalArgumentException("travel matrix has " + travel.dest.length + " regions, expected " + regionParams.size());
+        }
+        long people = 0;
+        for (SimParams p : regionParams) people += p.populationSize;
+        if (people > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(people + " people in all; the global series holds at most " + Integer.MAX_VALUE);
+        }
+        this.params = regionParams;
+        this.travel = travel;
+        this.scenario = scenario;
+        this.pool = new ForkJoinPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+        this.grain = Math.max(1, regionParams.size() / (8 * pool.getParallelism()));
+    }
+
+    public void setOutputDir(String dir) {
+        this.outputDir = (dir == null || dir.isBlank()) ? "runs" : dir;
+    }
+
+    public void initialize() {
+        int n = params.size();
+        regions = new Simulation[n];
+        couplingRng = new SplittableRandom[n];
+        exported = new long[n][];
+        PrintStream silent = new PrintStream(OutputStream.nullOutputStream());
+        parallel(r -> {
+            Simulation sim = new Simulation();
+            sim.setConsole(silent);
+            sim.setHeadless(true);
+            sim.setScenarioFolder(scenario);
+            sim.setMetricsCollector(new MetricsCollector());
+            sim.setDeferRecording(true); // rows are recorded after the imports, in step()
+            sim.initialize(params.get(r));
+            regions[r] = sim;
+            couplingRng[r] = new SplittableRandom(params.get(r).seed ^ 0x9E3779B97F4A7C15L);
+            exported[r] = new long[travel.dest[r].length];
+        });
+
+        // reverse index: for each destination, its (source, link) pairs in source order
+        int[] in = new int[n];
+        for (int[] d : travel.dest) for (int j : d) in[j]++;
+        inSource = new int[n][];
+        inLink = new int[n][];
+        for (int j = 0; j < n; j++) { inSource[j] = new int[in[j]]; inLink[j] = new int[in[j]]; }
+        Arrays.fill(in, 0);
+        for (int i = 0; i < n; i++) {
+            for (int k = 0; k < travel.dest[i].length; k++) {
+                int j = travel.dest[i][k];
+                inSource[j][in[j]] = i;
+                inLink[j][in[j]++] = k;
+            }
+        }
+        step = 0;
+        recordGlobal();
+    }
+
+    public void step() {
+        // 1) every region steps independently (recording waits for the imports)
+        parallel(r -> regions[r].step());
+
+        // 2) exports: transmitting contacts each region sends along its links
+        parallel(i -> {
+            Simulation src = regions[i];
+            long contacts = (long) src.infectedCount() * src.lastContacts();
+            double beta = params.get(i).beta;
+            for (int k = 0; k < exported[i].length; k++) {
+                exported[i][k] = (contacts == 0) ? 0 : Binomial.sample(couplingRng[i], contacts, Math.min(1.0, travel.rate[i][k] * beta));
+            }
+        });
+
+        // 3) imports, applied at the step boundary
+        parallel(j -> {
+            long attempts = 0;
+            for (int e = 0; e < inSource[j].length; e++) attempts += exported[inSource[j][e]][inLink[j][e]];
+            if (attempts > 0) regions[j].importInfections(attempts, couplingRng[j]);
+            regions[j].recordStep();
+        });
+
+        step++;
+        recordGlobal();
+    }
+
+    public int getStep() { return step; }
+
+    public long infected() {
+        long i = 0;
+        for (Simulation r : regions) i += r.infectedCount();
+        return i;
+    }
+
+    /** Summed S/I/R per step. */
+    public MetricsCollector globalMetrics() { return global; }
+
+    /** Run until maxSteps or no infection anywhere, then write the series. */
+    public void run(int maxSteps, long seed) throws IOException {
+        while (step < maxSteps && infected() > 0) step();
+        Path dir = Paths.get(outputDir, scenario, "metapop_seed" + seed);
+        Files.createDirectories(dir);
+        global.writeCsv(dir.resolve("global.csv"));
+        List<IOException> failed = new ArrayList<>();
+        parallel(r -> {
+            try {
+                regions[r].metrics().writeCsv(dir.resolve("region_" + r + ".csv"));
+            } catch (IOException e) {
+                synchronized (failed) { failed.add(e); }
+            }
+        });
+        pool.shutdown();
+        if (!failed.isEmpty()) throw failed.get(0);
+    }
+
+    private void recordGlobal() {
+        long s = 0, i = 0, r = 0;
+        for (Simulation sim : regions) {
+            Population p = sim.population();
+            s += p.count(HealthState.S);
+            i += p.count(HealthState.I);
+            r += p.count(HealthState.R);
+        }
+        global.record(step, (int) s, (int) i, (int) r);
+    }
+
+    private void parallel(IntConsumer body) {
+        pool.invoke(new Range(0, params.size(), grain, body));
+    }
+
+    public static void main(String[] args) throws Exception {
+        int regions = 100, size = 10_000, i0 = 10, seeded = 1, links = 4, threads = 0, maxSteps = 300;
+        double travelRate = 0.01;
+        long seed = 42;
+        String scenario = "baseline", travelFile = null;
+        for (int a = 0; a < args.length; a++) {
+            switch (args[a]) {
+                case "--regions": regions = Integer.parseInt(args[++a]); break;
+                case "--size": size = Integer.parseInt(args[++a]); break;
+                case "--i0": i0 = Integer.parseInt(args[++a]); break;
+                case "--seeded-regions": seeded = Integer.parseInt(args[++a]); break;
+                case "--links": links = Integer.parseInt(args[++a]); break;
+                case "--travel": travelRate = Double.parseDouble(args[++a]); break;
+                case "--travel-file": travelFile = args[++a]; break;
+                case "--threads": threads = Integer.parseInt(args[++a]); break;
+                case "--steps": maxSteps = Integer.parseInt(args[++a]); break;
+                case "--seed": seed = Long.parseLong(args[++a]); break;
+                case "--scenario": scenario = args[++a]; break;
+                default: throw new IllegalArgumentException("unknown option " + args[a]);
+            }
+        }
+        // BatchRunner's disease parameters; the first 'seeded' regions start with i0 infected
+        List<SimParams> ps = new ArrayList<>();
+        for (int r = 0; r < regions; r++) {
+            ps.add(new SimParams(size, r < seeded ? i0 : 0, BatchRunner.beta, BatchRunner.gamma,
+                                 BatchRunner.k, Integer.MAX_VALUE, seed + r));
+        }
+        Travel travel = (travelFile != null) ? Travel.load(Path.of(travelFile), regions)
+                                             : Travel.random(regions, links, travelRate, seed);
+
+        MetapopulationSimulation meta = new MetapopulationSimulation(ps, travel, scenario, threads);
+        long t0 = System.nanoTime();
+        meta.initialize();
+        meta.run(maxSteps, seed);
+        double secs = (System.nanoTime() - t0) / 1e9;
+
+        MetricsCollector g = meta.globalMetrics();
+        int peak = 0, peakStep = 0, last = g.size() - 1;
+        for (int row = 0; row <= last; row++) {
+            if (g.get(MetricsCollector.I, row) > peak) { peak = g.get(MetricsCollector.I, row); peakStep = row; }
+        }
+        System.out.printf(Locale.US, "Metapopulation: %d regions x %d people, %d steps in %.2fs (%.1f steps/s, %d threads)%n",
+                regions, size, meta.getStep(), secs, meta.getStep() / secs, meta.pool.getParallelism());
+        System.out.printf(Locale.US, "Global peak I=%d at step %d, final R=%d%n", peak, peakStep, g.get(MetricsCollector.R, last));
+        System.out.println("Wrote series to " + Paths.get(meta.outputDir, scenario, "metapop_seed" + seed));
+    }
+}
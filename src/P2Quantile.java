@@ -0,0 +1,85 @@
+// src/P2Quantile.java
+import java.util.Arrays;
+
+/**
+ * Streaming quantile estimate with the P² algorithm (Jain &amp; Chlamtac 1985).
+ * The first EXACT observations are kept and ranked exactly (the marker estimate is
+ * biased for small ensembles such as BatchRunner's 20 seeds); after that it switches to
+ * five markers, started from the buffered values, whatever the number of observations.
+ */
+public class P2Quantile {
+    static final int EXACT = 20;
+
+    private final double p;
+    private final double[] first = new double[EXACT]; // observations until the markers start
+    private final double[] q = new double[5];   // marker heights
+    private final int[] pos = new int[5];       // marker positions (1-based)
+    private final double[] want = new double[5]; // desired positions
+    private final double[] inc;                  // desired position increments
+    private int n;
+
+    public P2Quantile(double p) {
+        this.p = p;
+        this.inc = new double[] { 0, p / 2, p, (1 + p) / 2, 1 };
+    }
+
+    public void add(double x) {
+        if (n < EXACT) {
+            first[n++] = x;
+            return;
+        }
+        if (n == EXACT) {
+            // start the markers on the first five and replay the rest, as if streamed all along
+            System.arraycopy(first, 0, q, 0, 5);
+            Arrays.sort(q);
+            for (int i = 0; i < 5; i++) pos[i] = i + 1;
+            want[0] = 1; want[1] = 1 + 2 * p; want[2] = 1 + 4 * p; want[3] = 3 + 2 * p; want[4] = 5;
+            for (int j = 5; j < EXACT; j++) update(first[j]);
+        }
+        n++;
+        update(x);
+    }
+
+    private void update(double x) {
+        // find the cell k with q[k] <= x < q[k+1], extending the extremes if needed
+        int k;
+        if (x < q[0]) { q[0] = x; k = 0; }
+        else if (x >= q[4]) { q[4] = x; k = 3; }
+        else { k = 0; while (x >= q[k + 1]) k++; }
+
+        for (int i = k + 1; i < 5; i++) pos[i]++;
+        for (int i = 0; i < 5; i++) want[i] += inc[i];
+
+        // nudge the three middle markers towards their desired positions
+        for (int i = 1; i <= 3; i++) {
+            double d = want[i] - pos[i];
+            if ((d >= 1 && pos[i + 1] - pos[i] > 1) || (d <= -1 && pos[i - 1] - pos[i] < -1)) {
+                int s = d >= 0 ? 1 : -1;
+                double cand = parabolic(i, s);
+                if (q[i - 1] < cand && cand < q[i + 1]) q[i] = cand;
+                else q[i] = q[i] + s * (q[i + s] - q[i]) / (pos[i + s] - pos[i]);
+                pos[i] += s;
+            }
+        }
+    }
+
+    private double parabolic(int i, int s) {
+        return q[i] + (double) s / (pos[i + 1] - pos[i - 1])
+                * ((pos[i] - pos[i - 1] + s) * (q[i + 1] - q[i]) / (pos[i + 1] - pos[i])
+                 + (pos[i + 1] - pos[i] - s) * (q[i] - q[i - 1]) / (pos[i] - pos[i - 1]));
+    }
+
+    public long count() { return n; }
+
+    /** Current estimate (NaN before any value). */
+    public double value() {
+        if (n == 0) return Double.NaN;
+        if (n <= EXACT) {
+            // small sample: nearest-rank on a sorted copy
+            double[] s = Arrays.copyOf(first, n);
+            Arrays.sort(s);
+            return s[(int) Math.min(n - 1, Math.round(p * (n - 1)))];
+        }
+        return q[2];
+    }
+}
@@ -0,0 +1,264 @@
+// src/PackedPopulation.java
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.random.RandomGenerator;
+
+/**
+ * Off-heap health states for populations too large for Population (10^9 people and up).
+ *
+ * Each person is a 2-bit code (HealthState ordinals) or a 4-bit code (up to 16
+ * CompartmentModel compartments), packed into 64-bit words that live in direct
+ * ByteBuffers or in a memory-mapped file, 1 GB per buffer. A billion 2-bit people
+ * take 250 MB outside the heap. Person ids are longs.
+ *
+ * Bulk operations work a word at a time: a few shifts and masks turn a word into one
+ * bit per person in the wanted state, and Long.bitCount counts them. So count() reads
+ * 32 (or 16) people per instruction sequence, and move() (seeding, vaccination sweeps)
+ * skips whole words that have nobody in the source state.
+ *
+ * Not thread-safe for writes. A mapped population keeps its file after close(), so a
+ * later run can reopen it with mapped(...).
+ *
+ * PackedSimulation runs SIR epidemics on it (BatchRunner --packed, or its own main for
+ * a single run of 10^9 people).
+ */
+public final class PackedPopulation implements AutoCloseable {
+    private static final int CHUNK_BITS = 27;           // 2^27 words = 1 GB per buffer
+    private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+
+    private final long size;
+    private final int bits, lanes, laneMask;
+    private final long low;           // lowest bit of every lane
+    private final long words;
+    private final long lastMask;      // low bits of the lanes in use in the last word
+    private final LongBuffer[] chunks;
+    private final MappedByteBuffer[] mapped; // null unless file-backed
+    private final FileChannel channel;
+
+    private PackedPopulation(long size, int bits, FileChannel channel) throws IOException {
+        if (bits != 2 && bits != 4) throw new IllegalArgumentException("bits per person must be 2 or 4, got " + bits);
+        if (size < 0) throw new IllegalArgumentException("negative size " + size);
+        this.size = size;
+        this.bits = bits;
+        this.lanes = 64 / bits;
+        this.laneMask = (1 << bits) - 1;
+        this.low = (bits == 2) ? 0x5555_5555_5555_5555L : 0x1111_1111_1111_1111L;
+        this.words = (size + lanes - 1) / lanes;
+        int used = (int) (size - (words - 1) * lanes);
+        this.lastMask = (words == 0) ? 0 : (used == lanes) ? low : low & ((1L << (used * bits)) - 1);
+        this.channel = channel;
+
+        int n = (int) ((words + CHUNK_MASK) >>> CHUNK_BITS);
+        this.chunks = new LongBuffer[n];
+        this.mapped = (channel != null) ? new MappedByteBuffer[n] : null;
+        for (int c = 0; c < n; c++) {
+            long len = Math.min(CHUNK_MASK + 1, words - ((long) c << CHUNK_BITS)) * 8;
+            ByteBuffer b;
+            if (channel != null) {
+                mapped[c] = channel.map(FileChannel.MapMode.READ_WRITE, (long) c << (CHUNK_BITS + 3), len);
+                b = mapped[c];
+            } else {
+                b = ByteBuffer.allocateDirect((int) len);
+            }
+            chunks[c] = b.order(ByteOrder.nativeOrder()).asLongBuffer();
+        }
+    }
+
+    /** 'size' people in direct (off-heap) memory, all in state 'initial'. */
+    public static PackedPopulation allocate(long size, int bitsPerPerson, int initial) {
+        try {
+            PackedPopulation p = new PackedPopulation(size, bitsPerPerson, null);
+            if (initial != 0) p.fill(initial);
+            return p;
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // no file involved
+        }
+    }
+
+    /**
+     * 'size' people backed by 'file' (created if missing, grown as needed). Existing
+     * contents are kept, so the same size and bitsPerPerson reopen a saved population;
+     * a new file starts with everyone in state 0.
+     */
+    public static PackedPopulation mapped(Path file, long size, int bitsPerPerson) throws IOException {
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            return new PackedPopulation(size, bitsPerPerson, ch);
+        } catch (IOException | RuntimeException e) {
+            ch.close();
+            throw e;
+        }
+    }
+
+    public long size() { return size; }
+
+    public int bitsPerPerson() { return bits; }
+
+    /** @return the state code of person 'id' */
+    public int get(long id) {
+        checkId(id);
+        return (int) (word(id / lanes) >>> ((id % lanes) * bits)) & laneMask;
+    }
+
+    public void set(long id, int code) {
+        checkId(id);
+        checkCode(code);
+        long w = id / lanes;
+        int shift = (int) (id % lanes) * bits;
+        putWord(w, word(w) & ~((long) laneMask << shift) | ((long) code << shift));
+    }
+
+    public HealthState getState(long id) { return HealthState.values()[get(id)]; }
+
+    public void setState(long id, HealthState s) { set(id, s.ordinal()); }
+
+    /** Number of people in state 'code': one masked popcount per word. */
+    public long count(int code) {
+        checkCode(code);
+        long pattern = low * code, n = 0;
+        for (long w = 0; w < words; w++) n += Long.bitCount(matches(word(w), pattern) & valid(w));
+        return n;
+    }
+
+    public long count(HealthState s) { return count(s.ordinal()); }
+
+    /** Counts of every state code in one pass over the words. */
+    public long[] counts() {
+        long[] out = new long[1 << bits];
+        for (long w = 0; w < words; w++) {
+            long x = word(w), v = valid(w);
+            for (int code = 0; code < out.length; code++) out[code] += Long.bitCount(matches(x, low * code) & v);
+        }
+        return out;
+    }
+
+    /** @return the first id &gt;= 'from' in state 'code', or -1 (for walking, e.g., the infected) */
+    public long next(int code, long from) {
+        checkCode(code);
+        if (from < 0) from = 0;
+        if (from >= size) return -1;
+        long pattern = low * code;
+        long w = from / lanes;
+        long m = matches(word(w), pattern) & valid(w) & (-1L << ((from % lanes) * bits));
+        while (m == 0) {
+            if (++w >= words) return -1;
+            m = matches(word(w), pattern) & valid(w);
+        }
+        return w * lanes + Long.numberOfTrailingZeros(m) / bits;
+    }
+
+    /**
+     * Move 'k' people chosen uniformly at random from state 'from' to state 'to' (all of
+     * them if fewer are in 'from'). Large k uses sequential selection sampling: one pass, one
+     * uniform per candidate, no id list, and words without candidates are skipped after one
+     * popcount. Small k probes random ids instead. A fast rng (SplittableRandom) matters here.
+     * @return how many were moved
+     */
+    public long move(int from, int to, long k, RandomGenerator rng) {
+        checkCode(to);
+        long remaining = count(from);
+        long needed = Math.min(Math.max(k, 0), remaining);
+        long moved = needed;
+        if (needed * 128 < remaining) {
+            // sparse (e.g. seeding a few infections): random ids, keep those still in 'from';
+            // about needed * size / remaining probes, far fewer than a scan over all words
+            for (long left = needed; left > 0; ) {
+                long id = rng.nextLong(size);
+                if (get(id) == from) {
+                    set(id, to);
+                    left--;
+                }
+            }
+            return moved;
+        }
+        long pattern = low * from, target = low * to;
+        for (long w = 0; w < words && needed > 0; w++) {
+            long x = word(w);
+            long m = matches(x, pattern) & valid(w);
+            if (m == 0) continue;
+            long sel = 0;
+            if (needed == remaining) {
+                sel = m; // everyone left is taken
+                needed -= Long.bitCount(m);
+                remaining = needed;
+            } else {
+                for (long rest = m; rest != 0 && needed > 0; rest &= rest - 1) {
+                    if (rng.nextDouble() * remaining < needed) {
+                        sel |= Long.lowestOneBit(rest);
+                        needed--;
+                    }
+                    remaining--;
+                }
+            }
+            long lanesSel = sel * laneMask;
+            putWord(w, x & ~lanesSel | (lanesSel & target));
+        }
+        return moved;
+    }
+
+    /** Infect 'k' random susceptibles (like Population.seedInitialInfections). */
+    public long seedInfections(long k, RandomGenerator rng) {
+        return move(HealthState.S.ordinal(), HealthState.I.ordinal(), k, rng);
+    }
+
+    /** Move round(fraction * #S) random susceptibles to R (like Simulation.vaccinate). */
+    public long vaccinate(double fraction, RandomGenerator rng) {
+        if (fraction <= 0) return 0;
+        long s = count(HealthState.S);
+        return move(HealthState.S.ordinal(), HealthState.R.ordinal(), Math.round(fraction * s), rng);
+    }
+
+    /** Write mapped pages back to the file (no-op in direct memory). */
+    public void flush() {
+        if (mapped != null) for (MappedByteBuffer b : mapped) b.force();
+    }
+
+    /**
+     * Flush and close the file. Direct buffers are freed by the GC once unreachable;
+     * mappings stay valid until then as well (Java 17 has no explicit unmap).
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+        if (channel != null) channel.close();
+    }
+
+    // one bit (the lane's lowest) per lane of x that equals the pattern's lane
+    private long matches(long x, long pattern) {
+        long d = x ^ pattern;
+        d |= d >>> 1;
+        if (bits == 4) d |= d >>> 2;
+        return ~d & low;
+    }
+
+    private long valid(long w) {
+        return (w == words - 1) ? lastMask : low;
+    }
+
+    private void fill(int code) {
+        checkCode(code);
+        for (long w = 0; w < words; w++) putWord(w, low * code); // every lane = code
+    }
+
+    private void checkId(long id) {
+        if (id < 0 || id >= size) throw new IndexOutOfBoundsException("person " + id + ", size " + size);
+    }
+
+    private void checkCode(int code) {
+        if (code < 0 || code > laneMask) throw new IllegalArgumentException("state code " + code + " does not fit in " + bits + " bits");
+    }
+
+    private long word(long w) {
+        return chunks[(int) (w >>> CHUNK_BITS)].get((int) (w & CHUNK_MASK));
+    }
+
+    private void putWord(long w, long value) {
+        chunks[(int) (w >>> CHUNK_BITS)].put((int) (w & CHUNK_MASK), value);
+    }
+}
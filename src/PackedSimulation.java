@@ -0,0 +1,263 @@
+// src/PackedSimulation.java
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+import metrics.MetricsCollector;
+import metrics.RunArchive;
+
+/**
+ * Simulation's classic uniform-mixing SIR step on a PackedPopulation, for populations
+ * whose int and byte arrays would not fit in the heap (10^9 people take 250 MB off-heap,
+ * optionally in a memory-mapped file, see setBackingFile).
+ *
+ * Each step walks the infected a word at a time (PackedPopulation.next). Every infected
+ * person makes kEff uniform contacts, each infecting a susceptible with probability beta,
+ * then recovers with probability gamma. People infected this step are parked in the
+ * spare 2-bit code until the walk is over, so, as in Simulation, they neither infect nor
+ * recover before the next step and nobody is infected twice. The S/I/R counts are kept
+ * as running totals, so triggers and the recorded rows cost nothing extra. The random
+ * streams differ from Simulation's, so the same seed gives a different (equally valid) run.
+ */
+public class PackedSimulation implements SimulationEngine {
+    private static final int S = 0, I = 1, R = 2, NEW = 3; // NEW = infected during this step
+
+    private SimParams params;
+    private SplittableRandom rng;
+    private int step;
+    private MetricsCollector metrics;
+    private PackedPopulation population;
+    private long s, i, r;
+
+    private String scenarioFolder = "baseline";
+    private PrintStream console = System.out;
+    private boolean binaryOutput = false;
+    private boolean headless = false;
+    private LiveMetrics.Run live;
+    private String outputDir = "runs";
+    private Path backingFile;
+
+    // scenario rules (same InterventionPlan as Simulation)
+    private List<Intervention> interventions;
+    private InterventionPlan plan;
+    private final Intervention.Host host = new Intervention.Host() {
+        @Override public int time() { return step; }
+        @Override public long count(HealthState st) { return st == HealthState.S ? s : st == HealthState.I ? i : r; }
+        @Override public long size() { return params.populationSize; }
+        @Override public void vaccinate(double fraction) { PackedSimulation.this.vaccinate(fraction); }
+        @Override public String scenario() { return scenarioFolder; }
+        @Override public void log(String message) { console.println(message); }
+    };
+
+    public void setMetricsCollector(MetricsCollector metrics) {
+        this.metrics = metrics;
+    }
+
+    public void setScenarioFolder(String name) {
+        this.scenarioFolder = (name == null || name.isBlank()) ? "baseline" : name;
+    }
+
+    public String getScenarioFolder() { return this.scenarioFolder; }
+
+    public void setConsole(PrintStream console) {
+        this.console = (console == null) ? System.out : console;
+    }
+
+    public int getStep() { return step; }
+
+    public void setBinaryOutput(boolean binary) {
+        this.binaryOutput = binary;
+    }
+
+    public void setOutputDir(String dir) {
+        this.outputDir = (dir == null || dir.isBlank()) ? "runs" : dir;
+    }
+
+    public void setInterventions(List<Intervention> rules) {
+        this.interventions = rules;
+    }
+
+    public void setLiveMetrics(LiveMetrics.Run live) {
+        this.live = live;
+    }
+
+    public void setHeadless(boolean headless) {
+        this.headless = headless;
+        if (headless) this.console = new PrintStream(OutputStream.nullOutputStream());
+    }
+
+    /**
+     * Keep the states in a memory-mapped file instead of direct memory (null = direct).
+     * initialize() starts the file over. Call before initialize().
+     */
+    public void setBackingFile(Path file) {
+        this.backingFile = file;
+    }
+
+    public void initialize(SimParams params) {
+        this.params = params;
+        this.rng = new SplittableRandom(params.seed);
+        this.step = 0;
+        closePopulation();
+        try {
+            if (backingFile != null) {
+                Files.deleteIfExists(backingFile); // a new file starts with everyone in S (code 0)
+                population = PackedPopulation.mapped(backingFile, params.populationSize, 2);
+            } else {
+                population = PackedPopulation.allocate(params.populationSize, 2, S);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.i = population.seedInfections(params.initialInfected, rng);
+        this.s = params.populationSize - i;
+        this.r = 0;
+
+        if (this.metrics == null) {
+            this.metrics = new MetricsCollector();
+        }
+
+        // --- scenario-specific setup, same rules as Simulation ---
+        this.plan = (interventions != null) ? new InterventionPlan(interventions)
+                                            : InterventionPlan.forScenario(scenarioFolder);
+        plan.beforeStep(host);
+
+        console.printf(
+            "Initialized (packed): N=%d, I0=%d, beta=%.3f, gamma=%.3f, k=%d, maxSteps=%d, scenario=%s%n",
+            params.populationSize, params.initialInfected, params.beta, params.gamma,
+            params.contactsPerStep, params.maxSteps, scenarioFolder
+        );
+
+        printCounts();
+        metrics.record(step, (int) s, (int) i, (int) r);
+        if (live != null) live.step(step, s, i, r);
+    }
+
+    public void step() {
+        long n = params.populationSize;
+        plan.beforeStep(host);
+        int kEff = plan.contacts(host, params.contactsPerStep);
+
+        long newInf = 0, newRec = 0;
+        for (long id = population.next(I, 0); id >= 0; id = population.next(I, id + 1)) {
+            for (int c = 0; c < kEff && n > 1; c++) {
+                long other = rng.nextLong(n - 1);
+                if (other >= id) other++; // anyone but self
+                if (population.get(other) == S && rng.nextDouble() < params.beta) {
+                    population.set(other, NEW);
+                    newInf++;
+                }
+            }
+            if (rng.nextDouble() < params.gamma) {
+                population.set(id, R);
+                newRec++;
+            }
+        }
+        if (newInf > 0) population.move(NEW, I, newInf, rng); // all of them: no random draws
+
+        s -= newInf;
+        i += newInf - newRec;
+        r += newRec;
+        step++;
+
+        printCounts();
+        metrics.record(step, (int) s, (int) i, (int) r);
+        if (live != null) live.step(step, s, i, r);
+    }
+
+    public void run() {
+        while (step < params.maxSteps && i > 0) {
+            step();
+        }
+        console.println("Simulation finished.");
+        if (live != null) live.finished();
+        closePopulation();
+
+        try {
+            if (binaryOutput) {
+                Path dir = Paths.get(outputDir, scenarioFolder);
+                RunArchive.append(dir, params.seed, metrics);
+                console.println("Wrote metrics to: " + dir.resolve(RunArchive.DATA_FILE) + " (seed " + params.seed + ")");
+                return;
+            }
+            Path out = Paths.get(outputDir, scenarioFolder, "run_seed" + params.seed + ".csv");
+            Files.createDirectories(out.getParent());
+            metrics.writeCsv(out);
+            console.println("Wrote metrics to: " + out);
+        } catch (IOException e) {
+            System.err.println("Failed to write CSV: " + e.getMessage());
+        }
+    }
+
+    // flush a mapped file (the states stay in it) and drop the population
+    private void closePopulation() {
+        if (population == null) return;
+        try {
+            population.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        population = null;
+    }
+
+    // same rounding as Simulation.vaccinate: round(fraction * #susceptible)
+    private void vaccinate(double fraction) {
+        long v = population.vaccinate(fraction, rng);
+        s -= v;
+        r += v;
+    }
+
+    private void printCounts() {
+        if (headless) return;
+        if (step == 0) {
+            console.printf("%-6s %-10s %-10s %-10s%n", "Step", "Suscept.", "Infected", "Recovered");
+            console.println("--------------------------------------------");
+        }
+        console.printf("%-6d %-10d %-10d %-10d%n", step, s, i, r);
+    }
+
+    /** One large run: --size N (default 10^8) --i0 --steps --seed --scenario --file PATH (mapped). */
+    public static void main(String[] args) {
+        int size = 100_000_000, i0 = 1000, maxSteps = 300;
+        long seed = 42;
+        String scenario = "baseline", file = null;
+        for (int a = 0; a < args.length; a++) {
+            switch (args[a]) {
+                case "--size": size = Integer.parseInt(args[++a]); break;
+                case "--i0": i0 = Integer.parseInt(args[++a]); break;
+                case "--steps": maxSteps = Integer.parseInt(args[++a]); break;
+                case "--seed": seed = Long.parseLong(args[++a]); break;
+                case "--scenario": scenario = args[++a]; break;
+                case "--file": file = args[++a]; break;
+                default: throw new IllegalArgumentException("unknown option " + args[a]);
+            }
+        }
+        // BatchRunner's disease parameters
+        SimParams params = new SimParams(size, i0, BatchRunner.beta, BatchRunner.gamma, BatchRunner.k, maxSteps, seed);
+        PackedSimulation sim = new PackedSimulation();
+        sim.setScenarioFolder(scenario);
+        sim.setHeadless(true);
+        if (file != null) sim.setBackingFile(Path.of(file));
+        long t0 = System.nanoTime();
+        sim.initialize(params);
+        sim.run();
+        double secs = (System.nanoTime() - t0) / 1e9;
+
+        MetricsCollector g = sim.metrics;
+        int peak = 0, peakStep = 0, last = g.size() - 1;
+        for (int row = 0; row <= last; row++) {
+            if (g.get(MetricsCollector.I, row) > peak) { peak = g.get(MetricsCollector.I, row); peakStep = row; }
+        }
+        System.out.printf(Locale.US, "Packed: %d people, %d steps in %.2fs (%.2f steps/s)%n",
+                size, sim.getStep(), secs, sim.getStep() / secs);
+        System.out.printf(Locale.US, "Peak I=%d at step %d, final R=%d%n", peak, peakStep, g.get(MetricsCollector.R, last));
+        System.out.println("Wrote series to " + Paths.get(sim.outputDir, scenario, "run_seed" + seed + ".csv"));
+    }
+}
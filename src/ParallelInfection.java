@@ -0,0 +1,144 @@
+// src/ParallelInfection.java
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Multi-threaded version of the contact/infection and recovery draws in Simulation.step().
+ *
+ * The infected snapshot is cut into fixed-size chunks (independent of the thread count).
+ * Each chunk gets its own SplittableRandom, split in chunk order from a root stream seeded
+ * by (SimParams.seed, step), so a given seed produces the same result on 1 thread or 64.
+ * New infections are merged through a ConcurrentBitSet, which also removes duplicates.
+ */
+public class ParallelInfection {
+    static final int CHUNK = 1024; // infected agents per chunk
+
+    private final ForkJoinPool pool;
+    private ConcurrentBitSet hit;
+    private int[][] chunkHits = new int[0][];
+    private int[] chunkHitCount = new int[0];
+    private byte[] recovers = new byte[0];
+
+    // results of the last draw()
+    private int[] newInfections = new int[64];
+    private int nInfect, nRecover;
+
+    public ParallelInfection(int threads) {
+        this.pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Run infection and recovery draws for infected[0..nInfected) without changing any state.
+     * Afterwards newInfections()[0..infectionCount()) holds the distinct new infection ids and
+     * the recovering ids are compacted to the front of infected[0..recoveryCount()).
+     */
+    public void draw(Population population, ContactSampler contacts, int[] infected, int nInfected, int kEff,
+                     double beta, double gamma, long seed, int step) {
+        nInfect = 0;
+        nRecover = 0;
+        if (nInfected == 0) return;
+        int n = population.size();
+        if (hit == null || hit.capacity() < n) hit = new ConcurrentBitSet(n);
+
+        int nChunks = (nInfected + CHUNK - 1) / CHUNK;
+        if (chunkHits.length < nChunks) {
+            chunkHits = Arrays.copyOf(chunkHits, nChunks);
+            chunkHitCount = Arrays.copyOf(chunkHitCount, nChunks);
+        }
+        if (recovers.length < nInfected) recovers = new byte[Math.max(nInfected, recovers.length * 2)];
+
+        // one stream per chunk, split in a fixed order so results don't depend on scheduling
+        SplittableRandom root = new SplittableRandom(seed * 0x9E3779B97F4A7C15L + step);
+        SplittableRandom[] streams = new SplittableRandom[nChunks];
+        for (int c = 0; c < nChunks; c++) streams[c] = root.split();
+
+        pool.invoke(new ChunkTask(population, contacts, infected, nInfected, kEff, beta, gamma, streams, 0, nChunks));
+
+        // gather in chunk order
+        for (int c = 0; c < nChunks; c++) {
+            int cnt = chunkHitCount[c];
+            if (nInfect + cnt > newInfections.length) {
+                newInfections = Arrays.copyOf(newInfections, Math.max(nInfect + cnt, newInfections.length * 2));
+            }
+            for (int i = 0; i < cnt; i++) {
+                int id = chunkHits[c][i];
+                hit.clear(id);
+                newInfections[nInfect++] = id;
+            }
+        }
+        for (int j = 0; j < nInfected; j++) {
+            if (recovers[j] != 0) infected[nRecover++] = infected[j];
+        }
+    }
+
+    public int[] newInfections() { return newInfections; }
+    public int infectionCount() { return nInfect; }
+    public int recoveryCount() { return nRecover; }
+
+    public int threads() { return pool.getParallelism(); }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private final class ChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        final Population population;
+        final ContactSampler contacts;
+        final int[] infected;
+        final int nInfected, kEff;
+        final double beta, gamma;
+        final SplittableRandom[] streams;
+        final int lo, hi; // chunk range
+
+        ChunkTask(Population population, ContactSampler contacts, int[] infected, int nInfected, int kEff, double beta, double gamma,
+                  SplittableRandom[] streams, int lo, int hi) {
+            this.population = population;
+            this.contacts = contacts;
+            this.infected = infected;
+            this.nInfected = nInfected;
+            this.kEff = kEff;
+            this.beta = beta;
+            this.gamma = gamma;
+            this.streams = streams;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi <= lo) return;
+            if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new ChunkTask(population, contacts, infected, nInfected, kEff, beta, gamma, streams, lo, mid),
+                          new ChunkTask(population, contacts, infected, nInfected, kEff, beta, gamma, streams, mid, hi));
+                return;
+            }
+            int c = lo;
+            SplittableRandom rnd = streams[c];
+            int[] hits = chunkHits[c];
+            if (hits == null) hits = new int[64];
+            int cnt = 0;
+            int end = Math.min(nInfected, (c + 1) * CHUNK);
+            for (int j = c * CHUNK; j < end; j++) {
+                int inf = infected[j];
+                int kSelf = contacts.contactCount(inf, kEff, rnd);
+                for (int k = 0; k < kSelf; k++) {
+                    int other = contacts.sample(inf, rnd);
+                    if (other >= 0 && population.getState(other) == HealthState.S && rnd.nextDouble() < beta) {
+                        if (hit.set(other)) {
+                            if (cnt == hits.length) hits = Arrays.copyOf(hits, cnt * 2);
+                            hits[cnt++] = other;
+                        }
+                    }
+                }
+                recovers[j] = (byte) (rnd.nextDouble() < gamma ? 1 : 0);
+            }
+            chunkHits[c] = hits;
+            chunkHitCount[c] = cnt;
+        }
+    }
+}
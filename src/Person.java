@@ -4,16 +4,17 @@ import java.util.Objects;
 /**
  * Represents one agent in the simulation.
  * Tracks current health state and how long they've been in that state.
+ *
+ * A Person is only a view: the state itself lives in the owning Population's
+ * arrays, so these are created on demand and never need to be kept around.
  */
 public class Person {
+    private final Population population;
     private final int id;
-    private HealthState state;
-    private int timeInStateSteps; // counts simulation steps spent in current state
 
-    public Person(int id, HealthState initialState) {
+    Person(Population population, int id) {
+        this.population = population;
         this.id = id;
-        this.state = initialState;
-        this.timeInStateSteps = 0;
     }
 
     public int getId() {
@@ -21,34 +22,24 @@ public class Person {
     }
 
     public HealthState getState() {
-        return state;
+        return population.getState(id);
     }
 
     /**
      * Sets the state and resets the time-in-state counter.
      */
     public void setState(HealthState newState) {
-        if (this.state != newState) {
-            this.state = newState;
-            this.timeInStateSteps = 0;
-        }
+        population.setState(id, newState);
     }
 
+    /** Counts simulation steps spent in current state (advanced by Population.tickAll()). */
     public int getTimeInStateSteps() {
-        return timeInStateSteps;
-    }
-
-    /**
-     * Advance this person's internal timer by one simulation step.
-     * Call this once per step from the Simulation loop.
-     */
-    public void tick() {
-        timeInStateSteps++;
+        return population.getTimeInStateSteps(id);
     }
 
     @Override
     public String toString() {
-        return "Person{id=" + id + ", state=" + state + ", t=" + timeInStateSteps + "}";
+        return "Person{id=" + id + ", state=" + getState() + ", t=" + getTimeInStateSteps() + "}";
     }
 
     @Override
@@ -56,7 +47,7 @@ public class Person {
         if (this == o) return true;
         if (!(o instanceof Person)) return false;
         Person person = (Person) o;
-        return id == person.id;
+        return id == person.id && population == person.population;
     }
 
     @Override
@@ -1,52 +1,233 @@
 // src/Population.java
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
+import java.util.random.RandomGenerator;
 
 /**
  * Container for all people in the simulation.
  * Provides helpers to seed infections, query by state, and get counts.
+ *
+ * People are stored struct-of-arrays style: one byte of health state and one
+ * int "entered this state at tick" per person, indexed by person id and split
+ * into pages of PAGE people so fork() can share unchanged pages. Person
+ * objects are only created on demand as views over these arrays, so very large
+ * populations fit in a normal heap and loops over ids stay cache-friendly.
+ *
+ * Per-state counts and a dense index of the infected are kept up to date on
+ * every state change (swap-remove), so count() and the infected snapshot cost
+ * O(1) / O(#infected) instead of a scan over everyone.
  */
 public class Population {
-    private final List<Person> people = new ArrayList<>();
+    private static final HealthState[] STATES = HealthState.values();
 
-    public Population() {}
+    // storage is split into fixed pages so forks can share untouched pages (copy-on-write)
+    static final int PAGE_BITS = 12;
+    static final int PAGE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE - 1;
+
+    private byte[][] states;
+    private int[][] entryTick;   // value of 'clock' when the person entered their current state
+    private int[][] infectedPos; // position of each id in 'infected', or -1
+    private boolean[] owned;     // page may be written in place (false = shared with a fork)
+    private int size;
+    private int clock;           // number of tickAll() calls so far
+
+    private final int[] counts = new int[STATES.length];
+    private int[] infected;      // dense list of infected ids (unordered)
+    private int infectedCount;
+
+    public Population() {
+        this(0, HealthState.S);
+    }
 
     /** Create N people, all starting in the given state (default S in practice). */
     public Population(int size, HealthState initialState) {
-        for (int i = 0; i < size; i++) {
-            people.add(new Person(i, initialState));
+        int pages = Math.max(1, (size + PAGE - 1) >>> PAGE_BITS);
+        this.states = new byte[pages][];
+        this.entryTick = new int[pages][];
+        this.infectedPos = new int[pages][];
+        this.owned = new boolean[pages];
+        for (int p = 0; p < pages; p++) newPage(p);
+        this.infected = new int[initialState == HealthState.I ? Math.max(size, 16) : 16];
+        for (int p = 0; p < pages; p++) {
+            Arrays.fill(states[p], 0, Math.min(PAGE, size - (p << PAGE_BITS)), (byte) initialState.ordinal());
         }
+        this.size = size;
+        counts[initialState.ordinal()] = size;
+        if (initialState == HealthState.I) {
+            for (int id = 0; id < size; id++) addInfected(id);
+        }
+    }
+
+    private void newPage(int p) {
+        states[p] = new byte[PAGE];
+        entryTick[p] = new int[PAGE];
+        infectedPos[p] = new int[PAGE];
+        Arrays.fill(infectedPos[p], -1);
+        owned[p] = true;
+    }
+
+    // first write to a shared page: take a private copy
+    private void own(int p) {
+        states[p] = states[p].clone();
+        entryTick[p] = entryTick[p].clone();
+        infectedPos[p] = infectedPos[p].clone();
+        owned[p] = true;
+    }
+
+    /**
+     * Copy-on-write fork: the new population starts identical to this one and shares all
+     * pages with it; whichever side changes a person first copies that person's page
+     * (PAGE people). Counts and the infected index are copied, so a fork costs
+     * O(#pages + #infected) and each branch then pays only for the pages it touches.
+     */
+    public Population fork() {
+        Arrays.fill(owned, false);
+        Population f = new Population(0, HealthState.S);
+        f.states = states.clone();
+        f.entryTick = entryTick.clone();
+        f.infectedPos = infectedPos.clone();
+        f.owned = new boolean[owned.length];
+        f.size = size;
+        f.clock = clock;
+        System.arraycopy(counts, 0, f.counts, 0, counts.length);
+        f.infected = Arrays.copyOf(infected, Math.max(16, infectedCount));
+        f.infectedCount = infectedCount;
+        return f;
     }
 
-    /** Add a single person (useful for custom setups / tests). */
-    public void addPerson(Person p) {
-        people.add(p);
+    /** Number of pages this population holds a private copy of (shows what a fork cost). */
+    public int ownedPages() {
+        int n = 0;
+        for (boolean o : owned) if (o) n++;
+        return n;
     }
 
-    /** @return immutable view of all people */
+    /** Add a single person (useful for custom setups / tests). @return the new person's id */
+    public int addPerson(HealthState initialState) {
+        int p = size >>> PAGE_BITS;
+        if (p == states.length) {
+            states = Arrays.copyOf(states, p + 1);
+            entryTick = Arrays.copyOf(entryTick, p + 1);
+            infectedPos = Arrays.copyOf(infectedPos, p + 1);
+            owned = Arrays.copyOf(owned, p + 1);
+            newPage(p);
+        } else if (!owned[p]) {
+            own(p);
+        }
+        int id = size++;
+        states[p][id & PAGE_MASK] = (byte) initialState.ordinal();
+        entryTick[p][id & PAGE_MASK] = clock;
+        counts[initialState.ordinal()]++;
+        if (initialState == HealthState.I) addInfected(id);
+        return id;
+    }
+
+    /** @return a view of the person with the given id */
+    public Person get(int id) {
+        if (id < 0 || id >= size) throw new IndexOutOfBoundsException("id " + id + ", size " + size);
+        return new Person(this, id);
+    }
+
+    /** @return immutable view of all people (Person views are created lazily) */
     public List<Person> all() {
-        return Collections.unmodifiableList(people);
+        return new AbstractList<Person>() {
+            @Override public Person get(int id) { return Population.this.get(id); }
+            @Override public int size() { return size; }
+        };
     }
 
     public int size() {
-        return people.size();
+        return size;
+    }
+
+    public HealthState getState(int id) {
+        return STATES[states[id >>> PAGE_BITS][id & PAGE_MASK]];
+    }
+
+    /** Sets the state and resets the time-in-state counter (no-op if unchanged). */
+    public void setState(int id, HealthState newState) {
+        int p = id >>> PAGE_BITS, o = id & PAGE_MASK;
+        byte code = (byte) newState.ordinal();
+        byte old = states[p][o];
+        if (old != code) {
+            if (!owned[p]) own(p);
+            states[p][o] = code;
+            entryTick[p][o] = clock;
+            counts[old]--;
+            counts[code]++;
+            if (old == HealthState.I.ordinal()) removeInfected(id);
+            else if (newState == HealthState.I) addInfected(id);
+        }
+    }
+
+    // caller owns id's page
+    private void addInfected(int id) {
+        if (infectedCount == infected.length) infected = Arrays.copyOf(infected, Math.max(16, infectedCount * 2));
+        infectedPos[id >>> PAGE_BITS][id & PAGE_MASK] = infectedCount;
+        infected[infectedCount++] = id;
+    }
+
+    // swap-remove: move the last infected into the freed slot (caller owns id's page)
+    private void removeInfected(int id) {
+        int pos = infectedPos[id >>> PAGE_BITS][id & PAGE_MASK];
+        int last = infected[--infectedCount];
+        infected[pos] = last;
+        int lp = last >>> PAGE_BITS;
+        if (!owned[lp]) own(lp);
+        infectedPos[lp][last & PAGE_MASK] = pos;
+        infectedPos[id >>> PAGE_BITS][id & PAGE_MASK] = -1;
+    }
+
+    /** @return number of simulation steps the person has spent in their current state */
+    public int getTimeInStateSteps(int id) {
+        return clock - entryTick[id >>> PAGE_BITS][id & PAGE_MASK];
     }
 
     /** Get a new list containing only the people currently in the requested state. */
     public List<Person> getByState(HealthState s) {
         List<Person> out = new ArrayList<>();
-        for (Person p : people) {
-            if (p.getState() == s) out.add(p);
+        for (int id : idsInState(s)) out.add(new Person(this, id));
+        return out;
+    }
+
+    /** Get the ids of everyone currently in the requested state, in ascending order. */
+    public int[] idsInState(HealthState s) {
+        if (s == HealthState.I) {
+            int[] out = new int[infectedCount];
+            copyInfectedIds(out);
+            return out;
+        }
+        byte code = (byte) s.ordinal();
+        int[] out = new int[count(s)];
+        int j = 0;
+        for (int p = 0, base = 0; base < size; p++, base += PAGE) {
+            byte[] page = states[p];
+            int n = Math.min(PAGE, size - base);
+            for (int o = 0; o < n; o++) {
+                if (page[o] == code) out[j++] = base + o;
+            }
         }
         return out;
     }
 
+    /**
+     * Copy the infected ids into dest (which must hold at least count(I) entries),
+     * sorted ascending so RNG draws made while walking them stay reproducible.
+     * @return number of ids copied
+     */
+    public int copyInfectedIds(int[] dest) {
+        System.arraycopy(infected, 0, dest, 0, infectedCount);
+        Arrays.sort(dest, 0, infectedCount);
+        return infectedCount;
+    }
+
+    /** O(1): counts are maintained on every state change. */
     public int count(HealthState s) {
-        int c = 0;
-        for (Person p : people) if (p.getState() == s) c++;
-        return c;
+        return counts[s.ordinal()];
     }
 
     /**
@@ -54,25 +235,57 @@ public class Population {
      * If there are fewer than 'count' susceptibles, infect as many as possible.
      */
     public void seedInitialInfections(int count, Random rng) {
-        List<Person> susceptibles = getByState(HealthState.S);
-        if (susceptibles.isEmpty()) return;
+        int[] pool = idsInState(HealthState.S);
+        if (pool.length == 0) return;
 
-        // Shuffle a copy to avoid modifying original order
-        List<Person> pool = new ArrayList<>(susceptibles);
-        Collections.shuffle(pool, rng);
+        shuffle(pool, rng);
 
-        int toInfect = Math.min(count, pool.size());
+        int toInfect = Math.min(count, pool.length);
         for (int i = 0; i < toInfect; i++) {
-            pool.get(i).setState(HealthState.I);
+            setState(pool[i], HealthState.I);
         }
     }
+
     /** Advance internal timers for everyone by one step (call each simulation step). */
-public void tickAll() {
-    for (Person p : people) {
-        p.tick();
+    public void tickAll() {
+        clock++;
+    }
+
+    // --- page access for Checkpoint (pages are PAGE long; the last one may be partly used) ---
+
+    int clock() { return clock; }
+
+    byte[] statePage(int p) { return states[p]; }
+
+    int[] entryTickPage(int p) { return entryTick[p]; }
+
+    /** Rebuild a population from saved arrays; counts and the infected index are recomputed. */
+    static Population restore(byte[] flatStates, int[] flatEntryTick, int size, int clock) {
+        Population pop = new Population(size, HealthState.S);
+        pop.counts[HealthState.S.ordinal()] = 0;
+        pop.clock = clock;
+        for (int id = 0; id < size; id++) {
+            byte code = flatStates[id];
+            pop.states[id >>> PAGE_BITS][id & PAGE_MASK] = code;
+            pop.entryTick[id >>> PAGE_BITS][id & PAGE_MASK] = flatEntryTick[id];
+            pop.counts[code]++;
+            if (code == HealthState.I.ordinal()) pop.addInfected(id);
+        }
+        return pop;
     }
-}
 
+    /**
+     * Shuffle ids in place. Draws from rng exactly like Collections.shuffle does on a
+     * random-access list, so results match the old List&lt;Person&gt; implementation.
+     */
+    static void shuffle(int[] ids, RandomGenerator rng) {
+        for (int i = ids.length; i > 1; i--) {
+            int j = rng.nextInt(i);
+            int tmp = ids[i - 1];
+            ids[i - 1] = ids[j];
+            ids[j] = tmp;
+        }
+    }
 }
 
 //     /** Advance internal timers for everyone by one step (call each simulation step). */ TEST DRIVER use when you get home from work 
@@ -0,0 +1,148 @@
+// src/ResultCache.java
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import metrics.MetricsCollector;
+
+/**
+ * On-disk cache of finished runs' per-step series, addressed by content.
+ *
+ * The key is a SHA-256 over every SimParams field, the scenario's rules
+ * (InterventionPlan.definition, so renaming a scenario or editing a comment keeps the
+ * key), a description of the engine and its options, and ENGINE_VERSION. A hit gives
+ * back the recorded MetricsCollector without simulating anything. Entries are plain
+ * CSVs named &lt;key&gt;.csv in the cache folder (default runs/.cache, or
+ * -Dsim.cache.dir=DIR). A hit refreshes the file's modification time, and when the
+ * folder grows past its size bound (-Dsim.cache.maxMB, default 512) the least recently
+ * used entries are deleted.
+ *
+ * Several threads and processes may share one folder: entries are written to a temp
+ * file and moved into place, and an entry deleted under a reader is just a miss.
+ */
+final class ResultCache {
+    /** Bump whenever a change alters what an engine produces for the same inputs. */
+    static final String ENGINE_VERSION = "2";
+
+    private final Path dir;
+    private final long maxBytes;
+    private long approxBytes = -1; // bytes in the folder as far as this process knows (-1 = unknown)
+
+    ResultCache(Path dir, long maxBytes) throws IOException {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(dir);
+    }
+
+    /** Cache configured by -Dsim.cache.dir and -Dsim.cache.maxMB. */
+    static ResultCache fromProperties() throws IOException {
+        Path dir = Paths.get(System.getProperty("sim.cache.dir", Paths.get("runs", ".cache").toString()));
+        long mb = Long.parseLong(System.getProperty("sim.cache.maxMB", "512"));
+        return new ResultCache(dir, mb << 20);
+    }
+
+    /**
+     * Key for one run. 'engine' names the engine and every option that changes its output
+     * (e.g. "agent+events", "aggregate", "compartments:&lt;model definition&gt;").
+     */
+    static String key(SimParams p, String scenario, String engine) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("version=").append(ENGINE_VERSION).append('\n')
+          .append("engine=").append(engine).append('\n')
+          .append("populationSize=").append(p.populationSize).append('\n')
+          .append("initialInfected=").append(p.initialInfected).append('\n')
+          .append("beta=").append(Double.doubleToLongBits(p.beta)).append('\n')
+          .append("gamma=").append(Double.doubleToLongBits(p.gamma)).append('\n')
+          .append("contactsPerStep=").append(p.contactsPerStep).append('\n')
+          .append("maxSteps=").append(p.maxSteps).append('\n')
+          .append("seed=").append(p.seed).append('\n')
+          .append("scenario=\n").append(InterventionPlan.definition(scenario));
+        try {
+            byte[] h = MessageDigest.getInstance("SHA-256").digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(64);
+            for (byte b : h) hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /** @return the stored series for 'key', or null on a miss */
+    MetricsCollector get(String key) {
+        Path file = dir.resolve(key + ".csv");
+        try {
+            MetricsCollector mc = MetricsCollector.readCsv(file);
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return mc;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Ignoring unreadable cache entry " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /** Store a finished run's series (in-memory collectors only) and evict if over size. */
+    void put(String key, MetricsCollector mc) throws IOException {
+        Path file = dir.resolve(key + ".csv");
+        Path tmp = Files.createTempFile(dir, key, ".tmp");
+        try {
+            mc.writeCsv(tmp);
+            try {
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        long size = Files.size(file);
+        synchronized (this) {
+            if (approxBytes >= 0) approxBytes += size;
+            if (approxBytes < 0 || approxBytes > maxBytes) evict();
+        }
+    }
+
+    // scan the folder; if over the bound, delete least recently used entries down to 90%
+    private void evict() throws IOException {
+        List<Path> entries = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.filter(f -> f.getFileName().toString().endsWith(".csv")).forEach(entries::add);
+        }
+        long total = 0;
+        List<long[]> info = new ArrayList<>(entries.size()); // {mtime, size}
+        for (Path f : entries) {
+            try {
+                long[] i = { Files.getLastModifiedTime(f).toMillis(), Files.size(f) };
+                info.add(i);
+                total += i[1];
+            } catch (NoSuchFileException e) {
+                info.add(null); // evicted by another process meanwhile
+            }
+        }
+        if (total > maxBytes) {
+            List<Integer> order = new ArrayList<>();
+            for (int i = 0; i < entries.size(); i++) if (info.get(i) != null) order.add(i);
+            order.sort(Comparator.comparingLong(i -> info.get(i)[0]));
+            long target = maxBytes - maxBytes / 10;
+            for (int i : order) {
+                if (total <= target) break;
+                Files.deleteIfExists(entries.get(i));
+                total -= info.get(i)[1];
+            }
+        }
+        approxBytes = total;
+    }
+}
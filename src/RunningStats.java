@@ -0,0 +1,35 @@
+// src/RunningStats.java
+import java.util.Locale;
+
+/**
+ * One-pass mean / variance (Welford's algorithm). O(1) memory however many values are added,
+ * and numerically stable, so it can be fed straight from a stream of runs.
+ */
+public class RunningStats {
+    private long n;
+    private double mean, m2;
+
+    public void add(double x) {
+        n++;
+        double d = x - mean;
+        mean += d / n;
+        m2 += d * (x - mean);
+    }
+
+    public long count() { return n; }
+
+    public double mean() { return mean; }
+
+    /** Sample variance (n-1 denominator); 0 for fewer than two values. */
+    public double variance() { return n > 1 ? m2 / (n - 1) : 0.0; }
+
+    public double sd() { return Math.sqrt(variance()); }
+
+    /** Half-width of the normal-approximation 95% CI: 1.96 * sd / sqrt(n). */
+    public double ci95HalfWidth() { return n == 0 ? Double.NaN : 1.96 * sd() / Math.sqrt(n); }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "mean=%.3f, sd=%.3f, n=%d", mean, sd(), n);
+    }
+}
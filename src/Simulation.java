@@ -1,33 +1,188 @@
 // src/Simulation.java
-import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
-import java.util.Set;
+import java.util.random.RandomGenerator;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
 
 // metrics hook (make sure src/metrics/MetricsCollector.java exists)
 import metrics.MetricsCollector;
+import metrics.RunArchive;
 
-public class Simulation {
+public class Simulation implements SimulationEngine {
     private Population population;
     private SimParams params;
     private Random rng;
     private int step;
     private MetricsCollector metrics;
+    private int[] infectedNow = new int[64]; // reused snapshot of infected ids
+    private int[] toInfect = new int[64];    // reused buffer of infection targets
 
     // scenario-specific output folder (baseline / vaccine30 / quarantine50 / combo)
     private String scenarioFolder = "baseline";
 
+    // where progress tables and messages go (System.out unless redirected)
+    private PrintStream console = System.out;
+
+    // metrics options: stream rows to disk in chunks (0 = keep in memory), extra per-step columns
+    private int streamChunkRows = 0;
+    private boolean recordStepDetails = false;
+    private int colNewInfections, colRecoveries, colKEff;
+    private boolean binaryOutput = false;
+    private boolean headless = false;
+    private int lastKEff;           // kEff of the last step (for metapopulation coupling)
+    private int sBeforeStep, rBeforeStep; // S and R before the last step, for its detail columns
+    private boolean deferRecording;       // step() leaves printing/recording to recordStep()
+    private LiveMetrics.Run live;
+
+    // who infected people contact (null = uniform mixing over everyone)
+    private ContactSampler contactSampler;
+    private ContactSampler contacts;
+
+    // multi-threaded step kernel (null = classic single-threaded path)
+    private int parallelism = 0;
+    private ParallelInfection parallel;
+
+    // per-phase timers, only created with -Dsim.profile=true
+    private StepProfiler profiler;
+
+    // common random numbers: per-(step, person) streams instead of one shared Random
+    private boolean commonRandomNumbers = false;
+    private final CrnStream crn = new CrnStream();
+
+    // geometric skip-sampling of the Bernoulli(beta) / Bernoulli(gamma) trials
+    private boolean skipSampling = false;
+
+    // event-scheduled recovery: durations drawn at infection, due recoveries kept in a wheel
+    private InfectiousPeriod infectiousPeriod;
+    private TimingWheel recoveryWheel;
+    private static final int WHEEL_HORIZON = 256; // steps covered by recoveryWheel before overflow
+
+    // scenario rules: set explicitly, or loaded from scenarios/<scenario>.scenario
+    private List<Intervention> interventions;
+    private InterventionPlan plan;
+    private final Intervention.Host host = new Intervention.Host() {
+        @Override public int time() { return step; }
+        @Override public long count(HealthState s) { return population.count(s); }
+        @Override public long size() { return population.size(); }
+        @Override public void vaccinate(double fraction) {
+            Simulation.this.vaccinate(fraction, commonRandomNumbers ? crn.reset(params.seed, step, 0, CrnStream.VACCINATION) : rng);
+        }
+        @Override public String scenario() { return scenarioFolder; }
+        @Override public void log(String message) { console.println(message); }
+    };
+
+    // root folder for run outputs (run_seed*.csv, runs.bin, profiles)
+    private String outputDir = "runs";
+
     /** Allow Main (or tests) to attach a metrics collector. */
     public void setMetricsCollector(MetricsCollector metrics) {
         this.metrics = metrics;
     }
 
+    /** Redirect progress output (e.g. to a per-job buffer when runs execute in parallel). */
+    public void setConsole(PrintStream console) {
+        this.console = (console == null) ? System.out : console;
+    }
+
+    /**
+     * Use N worker threads for the infection/recovery draws (0 = classic single-threaded path).
+     * Parallel runs use per-chunk random streams, so they differ from the classic path but
+     * are identical for a given seed whatever N is. Call before initialize().
+     */
+    public void setParallelism(int threads) {
+        this.parallelism = Math.max(0, threads);
+    }
+
+    /**
+     * Sample contacts from a structured topology (e.g. a ContactNetwork) instead of uniform
+     * mixing. Its size must match SimParams.populationSize. Call before initialize().
+     */
+    public void setContactSampler(ContactSampler sampler) {
+        this.contactSampler = sampler;
+    }
+
+    /**
+     * Stream metrics rows to runs/&lt;scenario&gt;/run_seed&lt;seed&gt;.csv in chunks of this many rows
+     * on a background thread while the run goes on (0 = write everything at the end).
+     */
+    public void setStreamMetrics(int chunkRows) {
+        this.streamChunkRows = Math.max(0, chunkRows);
+    }
+
+    /**
+     * Append the run to runs/&lt;scenario&gt;/runs.bin (see metrics.RunArchive) instead of
+     * writing run_seed&lt;seed&gt;.csv. Not combinable with setStreamMetrics().
+     */
+    public void setBinaryOutput(boolean binary) {
+        this.binaryOutput = binary;
+    }
+
+    /** Also record newInfections, recoveries and kEff columns for every step. */
+    public void setRecordStepDetails(boolean record) {
+        this.recordStepDetails = record;
+    }
+
+    /**
+     * Draw each infected person's contacts and recovery from streams keyed by
+     * (seed, step, person) (see CrnStream) instead of the shared Random, so scenario
+     * branches forked from this run stay comparable. Takes precedence over
+     * setParallelism(). Call before initialize() or loadCheckpoint().
+     */
+    public void setCommonRandomNumbers(boolean crn) {
+        this.commonRandomNumbers = crn;
+    }
+
+    /**
+     * Draw each infection's duration once, when it starts, and keep the due recoveries in
+     * a TimingWheel, instead of a Bernoulli(gamma) draw per infected per step. Use
+     * InfectiousPeriod.geometric(gamma) for the classic model's distribution, or another
+     * period (fixed, erlang). null = classic per-step draws. Call before initialize().
+     */
+    public void setInfectiousPeriod(InfectiousPeriod period) {
+        this.infectiousPeriod = period;
+    }
+
+    /**
+     * Jump straight from one successful Bernoulli trial to the next with geometric skips
+     * instead of drawing every contact's beta test and every infected's gamma test. Same
+     * distribution as the classic path with far fewer RNG calls when beta/gamma are small
+     * (but a different random sequence). Single-threaded non-CRN path only.
+     */
+    public void setSkipSampling(boolean skip) {
+        this.skipSampling = skip;
+    }
+
+    /** Root folder for outputs (default "runs"); files go to &lt;dir&gt;/&lt;scenario&gt;/. */
+    public void setOutputDir(String dir) {
+        this.outputDir = (dir == null || dir.isBlank()) ? "runs" : dir;
+    }
+
+    /** Publish every recorded step to a live stream (see LiveServer); null = off. */
+    public void setLiveMetrics(LiveMetrics.Run live) {
+        this.live = live;
+    }
+
+    /** No console output at all; the per-step table is not even formatted. */
+    public void setHeadless(boolean headless) {
+        this.headless = headless;
+        if (headless) this.console = new PrintStream(OutputStream.nullOutputStream());
+    }
+
+    /**
+     * Use these interventions instead of the scenario's file (null = load
+     * scenarios/&lt;scenario&gt;.scenario). Call before initialize().
+     */
+    public void setInterventions(List<Intervention> rules) {
+        this.interventions = rules;
+    }
+
     /** Choose which folder to save CSVs into. */
     public void setScenarioFolder(String name) {
         this.scenarioFolder = (name == null || name.isBlank()) ? "baseline" : name;
@@ -38,30 +193,50 @@ public class Simulation {
     /** Optional accessor (handy for tests/UI). */
     public int getStep() { return step; }
 
+    /** Current number of infected people (O(1); handy for tests/benchmarks). */
+    public int infectedCount() { return population.count(HealthState.I); }
+
     public void initialize(SimParams params) {
         this.params = params;
         this.rng = new Random(params.seed);
         this.population = new Population(params.populationSize, HealthState.S);
+        setUpKernels();
 
         // seed initial infections
         this.population.seedInitialInfections(params.initialInfected, rng);
         this.step = 0;
+        if (infectiousPeriod != null) {
+            // seeds get their first recovery chance in step 0
+            this.recoveryWheel = new TimingWheel(WHEEL_HORIZON);
+            for (int id : population.idsInState(HealthState.I)) scheduleRecovery(id, 0);
+        } else {
+            this.recoveryWheel = null;
+        }
 
         // ensure we have a metrics sink (even if setMetricsCollector was never called)
         if (this.metrics == null) {
             this.metrics = new MetricsCollector();
         }
 
-        // --- apply scenario-specific setup BEFORE printing/recording step 0 ---
-        if ("vaccine30".equals(scenarioFolder)) {
-            vaccinate(0.30); // 30% vaccination at t=0
-            System.out.println("[vaccine30] Applied 30% vaccination at t=0.");
-        } else if ("combo".equals(scenarioFolder)) {
-            vaccinate(0.20); // 20% vaccination at t=0
-            System.out.println("[combo] Applied 20% vaccination at t=0.");
+        if (recordStepDetails) {
+            colNewInfections = metrics.addColumn("newInfections");
+            colRecoveries = metrics.addColumn("recoveries");
+            colKEff = metrics.addColumn("kEff");
         }
+        if (streamChunkRows > 0 && !binaryOutput) {
+            try {
+                metrics.startStreaming(runCsvPath(), streamChunkRows);
+            } catch (IOException e) {
+                System.err.println("Failed to open CSV for streaming, keeping rows in memory: " + e.getMessage());
+            }
+        }
+
+        // --- apply scenario-specific setup BEFORE printing/recording step 0 ---
+        this.plan = (interventions != null) ? new InterventionPlan(interventions)
+                                            : InterventionPlan.forScenario(scenarioFolder);
+        plan.beforeStep(host); // e.g. vaccination at t=0
 
-        System.out.printf(
+        console.printf(
             "Initialized: N=%d, I0=%d, beta=%.3f, gamma=%.3f, k=%d, maxSteps=%d, scenario=%s%n",
             params.populationSize, params.initialInfected, params.beta, params.gamma,
             params.contactsPerStep, params.maxSteps, scenarioFolder
@@ -76,9 +251,154 @@ public class Simulation {
             int i0 = population.count(HealthState.I);
             int r0 = population.count(HealthState.R);
             metrics.record(step, s0, i0, r0);
+            if (live != null) live.step(step, s0, i0, r0);
         }
     }
 
+    // contact sampler, profiler and parallel kernel (shared by initialize and loadCheckpoint)
+    private void setUpKernels() {
+        if (contactSampler != null && contactSampler.size() >= 0 && contactSampler.size() != params.populationSize) {
+            throw new IllegalArgumentException("contact sampler has " + contactSampler.size()
+                    + " people but populationSize=" + params.populationSize);
+        }
+        this.contacts = (contactSampler != null) ? contactSampler : new UniformMixing(params.populationSize);
+
+        this.profiler = StepProfiler.ENABLED ? new StepProfiler() : null;
+
+        boolean useParallel = parallelism > 0 && !commonRandomNumbers;
+        if (parallel != null && (!useParallel || parallel.threads() != parallelism)) shutdown();
+        if (useParallel && parallel == null) parallel = new ParallelInfection(parallelism); // else keep the workers
+    }
+
+    /**
+     * Branch this run: the returned Simulation continues from the current step under
+     * 'scenario' rules, sharing the population copy-on-write (see Population.fork), so
+     * the branch only pays for the pages it changes. Vaccination scenarios vaccinate at
+     * the fork step. This run is unaffected and can keep going or be forked again.
+     * Needs common random numbers, so every branch draws from the same streams.
+     */
+    public Simulation fork(String scenario) {
+        if (!commonRandomNumbers) throw new IllegalStateException("fork() needs setCommonRandomNumbers(true)");
+        if (streamChunkRows > 0 && !binaryOutput) throw new IllegalStateException("cannot fork a streamed run");
+        Simulation f = new Simulation();
+        f.console = console;
+        f.headless = headless;
+        f.recordStepDetails = recordStepDetails;
+        f.colNewInfections = colNewInfections;
+        f.colRecoveries = colRecoveries;
+        f.colKEff = colKEff;
+        f.binaryOutput = binaryOutput;
+        f.outputDir = outputDir;
+        f.commonRandomNumbers = true;
+        f.contactSampler = contactSampler;
+        f.infectiousPeriod = infectiousPeriod;
+        f.recoveryWheel = (recoveryWheel != null) ? recoveryWheel.copy() : null;
+        f.setScenarioFolder(scenario);
+
+        f.params = params;
+        f.step = step;
+        f.rng = rng; // not drawn from in CRN mode
+        f.population = population.fork();
+        f.metrics = metrics.copy();
+        f.setUpKernels();
+
+        // the branch's own rules; actions due already (vaccinate at t=0) fire at the fork step
+        f.plan = InterventionPlan.forScenario(f.scenarioFolder);
+        f.plan.beforeStep(f.host);
+        return f;
+    }
+
+    /** Shared population (for branch bookkeeping, e.g. ownedPages()). */
+    Population population() { return population; }
+
+    /** The collector this run records into. */
+    MetricsCollector metrics() { return metrics; }
+
+    /**
+     * Let the caller record each step (recordStep) after changing state between steps,
+     * e.g. MetapopulationSimulation's imports, so the row includes them.
+     */
+    void setDeferRecording(boolean defer) { this.deferRecording = defer; }
+
+    /** Contacts per infected person in the last step, after the scenario's contact rules. */
+    int lastContacts() { return lastKEff; }
+
+    /**
+     * Infection pressure from outside (MetapopulationSimulation): 'attempts' transmitting
+     * contacts with uniformly random people here; each one that hits a susceptible infects
+     * them. Call between steps. @return number of new infections
+     */
+    int importInfections(long attempts, RandomGenerator rng) {
+        int n = population.size(), infected = 0;
+        for (long a = 0; a < attempts; a++) {
+            int id = rng.nextInt(n);
+            if (population.getState(id) == HealthState.S) {
+                population.setState(id, HealthState.I);
+                if (recoveryWheel != null) scheduleRecovery(id, step);
+                infected++;
+            }
+        }
+        return infected;
+    }
+
+    /**
+     * Save the complete run state (params, scenario, step, RNG, every person's state,
+     * pending scheduled recoveries and the metrics so far) so it can be resumed with
+     * loadCheckpoint(). Not available while metrics are being streamed.
+     */
+    public void saveCheckpoint(Path path) throws IOException {
+        if (population == null) throw new IllegalStateException("nothing to checkpoint before initialize()");
+        if (streamChunkRows > 0 && !binaryOutput) {
+            throw new IllegalStateException("cannot checkpoint while metrics are streamed to disk");
+        }
+        Checkpoint.write(path, params, scenarioFolder, step, rng, population, metrics, plan.finishedActions(),
+                         (recoveryWheel != null) ? recoveryWheel.pending() : null);
+    }
+
+    /**
+     * Resume from a file written by saveCheckpoint(); use instead of initialize().
+     * Contact sampler, parallelism, output options and the infectious-period distribution
+     * are not saved: set them again before calling this (setInfectiousPeriod exactly when
+     * the saved run used one; its pending recoveries are restored). Continuing the run
+     * gives exactly the same output as never having stopped.
+     */
+    public void loadCheckpoint(Path path) throws IOException {
+        if (this.metrics == null) {
+            this.metrics = new MetricsCollector();
+        }
+        metrics.clear();
+        Checkpoint cp = Checkpoint.read(path, metrics);
+        if ((cp.recoveries != null) != (infectiousPeriod != null)) {
+            throw new IllegalStateException(cp.recoveries != null
+                    ? "checkpoint has event-scheduled recoveries; call setInfectiousPeriod() first"
+                    : "checkpoint holds no recovery schedule; clear setInfectiousPeriod()");
+        }
+        this.params = cp.params;
+        this.scenarioFolder = cp.scenario;
+        this.step = cp.step;
+        this.rng = cp.rng;
+        this.population = cp.population;
+        this.recoveryWheel = (cp.recoveries != null) ? TimingWheel.restore(WHEEL_HORIZON, step, cp.recoveries) : null;
+        setUpKernels();
+        this.plan = (interventions != null) ? new InterventionPlan(interventions)
+                                            : InterventionPlan.forScenario(scenarioFolder);
+        if (cp.finishedActions != null) plan.skipActions(cp.finishedActions);
+        else plan.skipAllActions();
+
+        // per-step detail columns come back with the metrics
+        List<String> names = metrics.columnNames();
+        this.recordStepDetails = names.contains("kEff");
+        if (recordStepDetails) {
+            colNewInfections = names.indexOf("newInfections");
+            colRecoveries = names.indexOf("recoveries");
+            colKEff = names.indexOf("kEff");
+        }
+        if (streamChunkRows > 0 && !binaryOutput) {
+            metrics.startStreaming(runCsvPath(), streamChunkRows);
+        }
+        console.printf("Resumed: step=%d, scenario=%s, from %s%n", step, scenarioFolder, path);
+    }
+
     /** Execute one simulation step:
      *  1) collect infection targets (don’t mutate mid-scan)
      *  2) collect recoveries
@@ -86,51 +406,202 @@ public class Simulation {
      *  4) tick time + increment step
      */
     public void step() {
-        // Snapshot who is infected at the start of the step
-        List<Person> infectedNow = population.getByState(HealthState.I);
+        if (StepProfiler.ENABLED) profiler.begin();
+        plan.beforeStep(host); // pending scenario actions (no-op once all have fired)
+
+        // Snapshot who is infected at the start of the step (reused buffer, no per-step allocation)
+        if (infectedNow.length < population.count(HealthState.I)) {
+            infectedNow = new int[Math.max(population.count(HealthState.I), infectedNow.length * 2)];
+        }
+        int nInfected = population.copyInfectedIds(infectedNow);
+
+        // Determine effective contacts per infected for this step (e.g. quarantine rules)
+        int kEff = plan.contacts(host, params.contactsPerStep);
+        lastKEff = kEff;
+        if (StepProfiler.ENABLED) {
+            profiler.lap(StepProfiler.SNAPSHOT);
+            profiler.addContacts((long) nInfected * kEff);
+        }
 
-        // Determine effective contacts per infected for this step
-        int kEff = params.contactsPerStep;
+        if (parallel != null) {
+            // multi-threaded draws with per-chunk random streams (see ParallelInfection)
+            double gamma = (recoveryWheel != null) ? 0.0 : params.gamma; // scheduled: no per-step draws
+            parallel.draw(population, contacts, infectedNow, nInfected, kEff, params.beta, gamma, params.seed, step);
+            if (StepProfiler.ENABLED) profiler.lap(StepProfiler.INFECT); // includes recovery draws
+            int nRecover = (recoveryWheel != null) ? recoveryWheel.drain(step, infectedNow) : parallel.recoveryCount();
+            int[] targets = parallel.newInfections();
+            int nInfect = parallel.infectionCount();
+            // chunks race to record a person hit twice, so the order depends on timing; durations
+            // are drawn from rng in this order, so make it deterministic first
+            if (recoveryWheel != null) Arrays.sort(targets, 0, nInfect);
+            applyAndAdvance(targets, nInfect, nRecover, kEff);
+            return;
+        }
 
-        // Quarantine logic applies to quarantine50 AND combo
-        if ("quarantine50".equals(scenarioFolder) || "combo".equals(scenarioFolder)) {
-            double prevalence = (double) population.count(HealthState.I) / population.size();
-            if (prevalence > 0.05) { // trigger when >5% infected
-                kEff = Math.max(1, (int)Math.round(0.5 * kEff)); // reduce by 50%
-            }
+        if (commonRandomNumbers) {
+            drawCommonRandom(nInfected, kEff);
+            return;
+        }
+        if (skipSampling) {
+            drawSkipping(nInfected, kEff);
+            return;
         }
 
-        // 1) Potential infections this step
-        Set<Person> toInfect = new HashSet<>();
-        for (Person inf : infectedNow) {
-            for (int c = 0; c < kEff; c++) {
-                Person other = randomOtherPerson(inf);
-                if (other.getState() == HealthState.S) {
+        // 1) Potential infections this step (duplicates are harmless: setState is a no-op the 2nd time)
+        int nInfect = 0;
+        for (int j = 0; j < nInfected; j++) {
+            int inf = infectedNow[j];
+            int kSelf = contacts.contactCount(inf, kEff, rng);
+            for (int c = 0; c < kSelf; c++) {
+                int other = contacts.sample(inf, rng);
+                if (other >= 0 && population.getState(other) == HealthState.S) {
                     if (rng.nextDouble() < params.beta) {
-                        toInfect.add(other);
+                        if (nInfect == toInfect.length) toInfect = Arrays.copyOf(toInfect, nInfect * 2);
+                        toInfect[nInfect++] = other;
                     }
                 }
             }
         }
+        if (StepProfiler.ENABLED) profiler.lap(StepProfiler.INFECT);
 
         // 2) Potential recoveries this step
-        List<Person> toRecover = new ArrayList<>();
-        for (Person inf : infectedNow) {
-            if (rng.nextDouble() < params.gamma) {
-                toRecover.add(inf);
+        int nRecover = 0;
+        if (recoveryWheel != null) {
+            nRecover = recoveryWheel.drain(step, infectedNow); // only the ones due now
+        } else {
+            for (int j = 0; j < nInfected; j++) {
+                int inf = infectedNow[j];
+                if (rng.nextDouble() < params.gamma) {
+                    infectedNow[nRecover++] = inf; // reuse the snapshot; already-read slots are free
+                }
+            }
+        }
+        if (StepProfiler.ENABLED) profiler.lap(StepProfiler.RECOVER);
+
+        applyAndAdvance(toInfect, nInfect, nRecover, kEff);
+    }
+
+    // steps 1) and 2) by geometric skipping. Everyone's contacts form one row of trials;
+    // only the trials whose beta test succeeds get a contact drawn (who is contacted doesn't
+    // depend on the test), so each one costs RNG calls only when it can infect.
+    private void drawSkipping(int nInfected, int kEff) {
+        int nInfect = 0;
+        if (params.beta > 0) {
+            double logQ = Math.log1p(-params.beta);
+            long gap = skip(logQ, Integer.MAX_VALUE); // failed trials before the next success
+            for (int j = 0; j < nInfected; j++) {
+                int inf = infectedNow[j];
+                long left = contacts.contactCount(inf, kEff, rng);
+                while (gap < left) {
+                    int other = contacts.sample(inf, rng);
+                    if (other >= 0 && population.getState(other) == HealthState.S) {
+                        if (nInfect == toInfect.length) toInfect = Arrays.copyOf(toInfect, nInfect * 2);
+                        toInfect[nInfect++] = other;
+                    }
+                    left -= gap + 1;
+                    gap = skip(logQ, Integer.MAX_VALUE);
+                }
+                gap -= left;
             }
         }
+        if (StepProfiler.ENABLED) profiler.lap(StepProfiler.INFECT);
+
+        int nRecover = 0;
+        if (recoveryWheel != null) {
+            nRecover = recoveryWheel.drain(step, infectedNow);
+        } else if (params.gamma > 0) {
+            double logQ = Math.log1p(-params.gamma);
+            for (long j = skip(logQ, nInfected); j < nInfected; j += 1 + skip(logQ, nInfected)) {
+                infectedNow[nRecover++] = infectedNow[(int) j]; // j >= nRecover, already read
+            }
+        }
+        if (StepProfiler.ENABLED) profiler.lap(StepProfiler.RECOVER);
+
+        applyAndAdvance(toInfect, nInfect, nRecover, kEff);
+    }
+
+    // failures before the next success, ~ Geometric(p) with logQ = log(1-p); capped at 'cap'
+    private long skip(double logQ, long cap) {
+        double g = Math.log(1.0 - rng.nextDouble()) / logQ;
+        return g < cap ? (long) g : cap;
+    }
+
+    // steps 1) and 2) with one stream per (step, infected person, purpose); the beta draw
+    // is made for every contact so a person's stream doesn't depend on others' states
+    private void drawCommonRandom(int nInfected, int kEff) {
+        int nInfect = 0;
+        for (int j = 0; j < nInfected; j++) {
+            int inf = infectedNow[j];
+            crn.reset(params.seed, step, inf, CrnStream.CONTACTS);
+            int kSelf = contacts.contactCount(inf, kEff, crn);
+            for (int c = 0; c < kSelf; c++) {
+                int other = contacts.sample(inf, crn);
+                double u = crn.nextDouble();
+                if (other >= 0 && u < params.beta && population.getState(other) == HealthState.S) {
+                    if (nInfect == toInfect.length) toInfect = Arrays.copyOf(toInfect, nInfect * 2);
+                    toInfect[nInfect++] = other;
+                }
+            }
+        }
+        if (StepProfiler.ENABLED) profiler.lap(StepProfiler.INFECT);
+
+        int nRecover = 0;
+        if (recoveryWheel != null) {
+            nRecover = recoveryWheel.drain(step, infectedNow);
+        } else {
+            for (int j = 0; j < nInfected; j++) {
+                int inf = infectedNow[j];
+                if (crn.reset(params.seed, step, inf, CrnStream.RECOVERY).nextDouble() < params.gamma) {
+                    infectedNow[nRecover++] = inf;
+                }
+            }
+        }
+        if (StepProfiler.ENABLED) profiler.lap(StepProfiler.RECOVER);
+
+        applyAndAdvance(toInfect, nInfect, nRecover, kEff);
+    }
+
+    // steps 3) and 4); recovering ids are at the front of infectedNow
+    private void applyAndAdvance(int[] targets, int nInfect, int nRecover, int kEff) {
+        int sBefore = population.count(HealthState.S);
+        int rBefore = population.count(HealthState.R);
 
         // 3) Apply state changes
-        for (Person p : toInfect)   p.setState(HealthState.I);
-        for (Person p : toRecover)  p.setState(HealthState.R);
+        if (recoveryWheel != null) {
+            // newly infected first get a recovery chance next step, as in the classic path
+            for (int i = 0; i < nInfect; i++) {
+                int id = targets[i];
+                if (population.getState(id) == HealthState.S) {
+                    population.setState(id, HealthState.I);
+                    scheduleRecovery(id, step + 1);
+                }
+            }
+        } else {
+            for (int i = 0; i < nInfect; i++) population.setState(targets[i], HealthState.I);
+        }
+        for (int i = 0; i < nRecover; i++) population.setState(infectedNow[i], HealthState.R);
+        if (StepProfiler.ENABLED) profiler.lap(StepProfiler.APPLY);
 
         // 4) Advance internal timers and increment step
         population.tickAll();
         step++;
+        if (StepProfiler.ENABLED) profiler.lap(StepProfiler.TICK);
+
+        sBeforeStep = sBefore;
+        rBeforeStep = rBefore;
+        if (!deferRecording) recordStep();
+    }
+
+    /**
+     * Print and record the counts after the last step. step() does this itself unless
+     * setDeferRecording(true); then call it once per step, after any imports.
+     */
+    void recordStep() {
+        int sBefore = sBeforeStep, rBefore = rBeforeStep, kEff = lastKEff;
 
         // print post-step counts
         printCounts();
+        if (StepProfiler.ENABLED) profiler.lap(StepProfiler.PRINT);
 
         // record counts for this step
         if (metrics != null) {
@@ -138,65 +609,117 @@ public class Simulation {
             int i = population.count(HealthState.I);
             int r = population.count(HealthState.R);
             metrics.record(step, s, i, r);
+            if (live != null) live.step(step, s, i, r);
+            if (recordStepDetails) {
+                metrics.set(colNewInfections, sBefore - s);
+                metrics.set(colRecoveries, r - rBefore);
+                metrics.set(colKEff, kEff);
+            }
         }
+        if (StepProfiler.ENABLED) {
+            profiler.lap(StepProfiler.RECORD);
+            profiler.end(step);
+        }
+    }
+
+    // draw how long 'id' stays infected; its first chance to recover is step 'first'
+    private void scheduleRecovery(int id, int first) {
+        RandomGenerator r = commonRandomNumbers ? crn.reset(params.seed, first, id, CrnStream.RECOVERY) : rng;
+        int d = infectiousPeriod.sample(r);
+        long due = (long) first + d - 1;
+        // FOREVER, or so long that the step count would overflow first: never recovers
+        if (d != InfectiousPeriod.FOREVER && due <= Integer.MAX_VALUE) recoveryWheel.schedule(id, (int) due);
     }
 
     public void run() {
         while (step < params.maxSteps && population.count(HealthState.I) > 0) {
             step();
         }
-        System.out.println("Simulation finished.");
+        console.println("Simulation finished.");
+        if (live != null) live.finished();
+        if (StepProfiler.ENABLED) writeProfile();
+        shutdown();
+
+        // --- Or append it to the scenario's binary archive ---
+        if (metrics != null && binaryOutput) {
+            try {
+                Path dir = Paths.get(outputDir, scenarioFolder);
+                RunArchive.append(dir, params.seed, metrics);
+                console.println("Wrote metrics to: " + dir.resolve(RunArchive.DATA_FILE) + " (seed " + params.seed + ")");
+            } catch (IOException e) {
+                System.err.println("Failed to append run archive: " + e.getMessage());
+            }
+        }
 
         // --- Write metrics CSV to runs/<scenarioFolder>/run_seed<seed>.csv ---
-        if (metrics != null) {
+        else if (metrics != null) {
             try {
-                Path out = Paths.get("runs", scenarioFolder, "run_seed" + params.seed + ".csv");
+                Path out = runCsvPath();
                 Files.createDirectories(out.getParent());   // ensure folder exists
                 metrics.writeCsv(out);
-                System.out.println("Wrote metrics to: " + out);
+                console.println("Wrote metrics to: " + out);
             } catch (IOException e) {
                 System.err.println("Failed to write CSV: " + e.getMessage());
             }
         }
     }
 
-    private Person randomOtherPerson(Person notThisOne) {
-        // pick a random index; if it equals notThisOne, pick again (few tries; good enough for classroom scale)
-        int n = population.size();
-        Person p;
-        do {
-            p = population.all().get(rng.nextInt(n));
-        } while (p == notThisOne && n > 1);
-        return p;
+    /**
+     * Stop the parallel workers. run() does this itself; callers that drive step() directly
+     * call it when done. A later initialize() starts new ones.
+     */
+    public void shutdown() {
+        if (parallel != null) {
+            parallel.shutdown();
+            parallel = null;
+        }
+    }
+
+    // per-phase profile next to run_seed<seed>.csv (only with -Dsim.profile=true)
+    private void writeProfile() {
+        Path out = Paths.get(outputDir, scenarioFolder, "profile_seed" + params.seed + ".csv");
+        console.printf("Profile: %d steps, %.1f steps/s, %d contacts attempted%n",
+            profiler.steps(), profiler.stepsPerSecond(), profiler.totalContacts());
+        try {
+            profiler.writeCsv(out);
+            console.println("Wrote profile to: " + out);
+        } catch (IOException e) {
+            System.err.println("Failed to write profile: " + e.getMessage());
+        }
+    }
+
+    private Path runCsvPath() {
+        return Paths.get(outputDir, scenarioFolder, "run_seed" + params.seed + ".csv");
     }
 
     // pretty table printout
     private void printCounts() {
+        if (headless) return;
         int s = population.count(HealthState.S);
         int i = population.count(HealthState.I);
         int r = population.count(HealthState.R);
 
         if (step == 0) {
             // print header once
-            System.out.printf("%-6s %-10s %-10s %-10s%n", "Step", "Suscept.", "Infected", "Recovered");
-            System.out.println("--------------------------------------------");
+            console.printf("%-6s %-10s %-10s %-10s%n", "Step", "Suscept.", "Infected", "Recovered");
+            console.println("--------------------------------------------");
         }
-        System.out.printf("%-6d %-10d %-10d %-10d%n", step, s, i, r);
+        console.printf("%-6d %-10d %-10d %-10d%n", step, s, i, r);
     }
 
     // Move a fraction of current susceptibles to Recovered at t=0
-    private void vaccinate(double fraction) {
+    private void vaccinate(double fraction, RandomGenerator rng) {
         if (fraction <= 0) return;
-        var susceptibles = population.getByState(HealthState.S);
-        if (susceptibles == null || susceptibles.isEmpty()) return;
+        int[] susceptibles = population.idsInState(HealthState.S);
+        if (susceptibles.length == 0) return;
 
         // shuffle to pick random susceptibles
-        java.util.Collections.shuffle(susceptibles, rng);
-        int toVaccinate = (int)Math.round(fraction * susceptibles.size());
-        toVaccinate = Math.min(toVaccinate, susceptibles.size());
+        Population.shuffle(susceptibles, rng);
+        int toVaccinate = (int)Math.round(fraction * susceptibles.length);
+        toVaccinate = Math.min(toVaccinate, susceptibles.length);
 
         for (int i = 0; i < toVaccinate; i++) {
-            susceptibles.get(i).setState(HealthState.R);
+            population.setState(susceptibles[i], HealthState.R);
         }
     }
 }
@@ -0,0 +1,28 @@
+// src/SimulationEngine.java
+import metrics.MetricsCollector;
+import java.io.PrintStream;
+
+/**
+ * What Main/BatchRunner need from a simulation, so the agent-based Simulation
+ * and the count-based AggregateSimulation can be swapped freely.
+ */
+public interface SimulationEngine {
+    void setMetricsCollector(MetricsCollector metrics);
+    void setScenarioFolder(String name);
+    String getScenarioFolder();
+    void setConsole(PrintStream console);
+    /** Root folder for outputs (default "runs"); files go to &lt;dir&gt;/&lt;scenario&gt;/. */
+    void setOutputDir(String dir);
+    /** Append results to &lt;dir&gt;/&lt;scenario&gt;/runs.bin instead of writing CSV files. */
+    void setBinaryOutput(boolean binary);
+    /** Use these scenario rules instead of scenarios/&lt;scenario&gt;.scenario (null = load the file). */
+    void setInterventions(java.util.List<Intervention> rules);
+    /** Publish every recorded step to a live stream (see LiveServer); null = off. */
+    void setLiveMetrics(LiveMetrics.Run live);
+    /** No console output at all; the per-step table is not even formatted. */
+    void setHeadless(boolean headless);
+    void initialize(SimParams params);
+    void step();
+    void run();
+    int getStep();
+}
@@ -0,0 +1,190 @@
+// src/SpatialMixing.java
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * Spatial contacts: people live in households placed on a width x height grid of cells
+ * (a torus, so edge cells have full neighbourhoods). Each contact is drawn from
+ *   - the own household, with weight 'home',
+ *   - a random cell within 'radius' cells (Chebyshev distance, own cell included), then
+ *     a random person in it, with weight 'near',
+ *   - anyone, with weight 'anywhere'.
+ * People living alone use 'near' in place of 'home'.
+ *
+ * The generator numbers people by cell and, inside a cell, by household, so the people of
+ * cell c are exactly ids cellStart[c] .. cellStart[c+1]) and every household is a run of
+ * consecutive ids. No member lists are needed: each person stores their cell and their
+ * position and size within the household side by side (8 bytes, so one cache miss), every
+ * draw is a couple of array reads and random ints (O(1)), and nearby contacts land on
+ * nearby ids, so the population lookups of a step mostly hit cache instead of jumping
+ * across the whole array.
+ *
+ * Weights may change between steps (setWeights), e.g. to model a lockdown.
+ */
+public class SpatialMixing implements ContactSampler {
+    private final int width, height;
+    private final int n;
+    private final int[] meta;           // per person: [2i] = y * width + x, [2i+1] = index in household << 16 | size
+    private final int[] cellStart;      // width*height + 1 offsets into the id range
+    private final int[] householdStart; // households + 1 offsets into the id range
+
+    private int radius = 1;
+    private double pHome = 0.5, pNear = 0.9; // cumulative: home, home + near
+
+    private SpatialMixing(int width, int height, int n, int[] meta, int[] cellStart, int[] householdStart) {
+        this.width = width;
+        this.height = height;
+        this.n = n;
+        this.meta = meta;
+        this.cellStart = cellStart;
+        this.householdStart = householdStart;
+    }
+
+    /**
+     * Mixing weights (relative, need not sum to 1). Default 0.5, 0.4, 0.1.
+     * Call before the run or between steps.
+     */
+    public void setWeights(double home, double near, double anywhere) {
+        if (!(home >= 0 && near >= 0 && anywhere >= 0) || home + near + anywhere <= 0) {
+            throw new IllegalArgumentException("mixing weights must be >= 0 and not all 0");
+        }
+        double sum = home + near + anywhere;
+        this.pHome = home / sum;
+        this.pNear = (home + near) / sum;
+    }
+
+    /** Neighbourhood radius in cells (0 = own cell only). Default 1, i.e. 3x3 cells. */
+    public void setRadius(int radius) {
+        if (radius < 0) throw new IllegalArgumentException("radius must be >= 0");
+        this.radius = radius;
+    }
+
+    @Override
+    public int size() { return n; }
+
+    public int x(int id) { return meta[2 * id] % width; }
+
+    public int y(int id) { return meta[2 * id] / width; }
+
+    /** Household id (households are numbered in id order; binary search, not for hot loops). */
+    public int household(int id) {
+        return Arrays.binarySearch(householdStart, id - (meta[2 * id + 1] >>> 16));
+    }
+
+    public int households() { return householdStart.length - 1; }
+
+    @Override
+    public int sample(int self, RandomGenerator rng) {
+        double u = rng.nextDouble();
+        if (u < pHome) {
+            int hh = meta[2 * self + 1];
+            int size = hh & 0xFFFF;
+            if (size > 1) {
+                int p = self - (hh >>> 16) + rng.nextInt(size - 1); // everyone but self
+                return (p >= self) ? p + 1 : p;
+            }
+        } else if (u >= pNear) {
+            return anyone(self, rng);
+        }
+        return nearby(self, rng);
+    }
+
+    // random cell in the neighbourhood, random person in it; a few retries for empty cells
+    private int nearby(int self, RandomGenerator rng) {
+        int c = meta[2 * self];
+        int cx = c % width, cy = c / width, span = 2 * radius + 1;
+        for (int tries = 0; tries < 8; tries++) {
+            int nx = Math.floorMod(cx + rng.nextInt(span) - radius, width);
+            int ny = Math.floorMod(cy + rng.nextInt(span) - radius, height);
+            int nc = ny * width + nx;
+            int lo = cellStart[nc], count = cellStart[nc + 1] - lo;
+            if (count == 0) continue;
+            int p = lo + rng.nextInt(count);
+            if (p != self) return p;
+        }
+        return anyone(self, rng); // empty neighbourhood
+    }
+
+    private int anyone(int self, RandomGenerator rng) {
+        if (n < 2) return -1;
+        int p;
+        do {
+            p = rng.nextInt(n);
+        } while (p == self);
+        return p;
+    }
+
+    // ---------------------------------------------------------------- generator
+
+    /**
+     * Random layout of n people: household sizes 1 + Poisson(meanHousehold - 1) (at most
+     * 65535), each household in a uniformly random cell. Ids are assigned in cell order
+     * (see above).
+     */
+    public static SpatialMixing generate(int n, int width, int height, double meanHousehold, long seed) {
+        if (width <= 0 || height <= 0) throw new IllegalArgumentException("grid must be at least 1x1");
+        long cells = (long) width * height;
+        if (cells >= Integer.MAX_VALUE) throw new IllegalArgumentException("grid too large: " + width + "x" + height);
+        SplittableRandom rnd = new SplittableRandom(seed);
+        double extra = Math.max(0.0, meanHousehold - 1);
+
+        // households in generation order: size and cell
+        int[] hhSize = new int[Math.max(1, n)];
+        int[] hhCell = new int[hhSize.length];
+        int[] cellPeople = new int[(int) cells + 1];
+        int[] cellHouseholds = new int[(int) cells + 1];
+        int hh = 0;
+        for (int placed = 0; placed < n; hh++) {
+            int size = Math.min(Math.min(n - placed, 1 + poisson(rnd, extra)), 0xFFFF);
+            int c = rnd.nextInt((int) cells);
+            hhSize[hh] = size;
+            hhCell[hh] = c;
+            cellPeople[c + 1] += size;
+            cellHouseholds[c + 1]++;
+            placed += size;
+        }
+        for (int c = 0; c < cells; c++) {
+            cellPeople[c + 1] += cellPeople[c];
+            cellHouseholds[c + 1] += cellHouseholds[c];
+        }
+
+        // counting sort of households by cell, keeping generation order inside a cell
+        int[] order = new int[hh];
+        int[] cursor = cellHouseholds.clone();
+        for (int h = 0; h < hh; h++) order[cursor[hhCell[h]]++] = h;
+
+        if (2L * n > Integer.MAX_VALUE - 8) throw new IllegalArgumentException("too many people: " + n);
+        int[] meta = new int[2 * n];
+        int[] householdStart = new int[hh + 1];
+        int id = 0;
+        for (int h = 0; h < hh; h++) {
+            int g = order[h];
+            householdStart[h] = id;
+            for (int j = 0; j < hhSize[g]; j++, id++) {
+                meta[2 * id] = hhCell[g];
+                meta[2 * id + 1] = (j << 16) | hhSize[g];
+            }
+        }
+        householdStart[hh] = id;
+        return new SpatialMixing(width, height, n, meta, cellPeople, householdStart);
+    }
+
+    /** Square grid with about 'perCell' people per cell. */
+    public static SpatialMixing generate(int n, double perCell, double meanHousehold, long seed) {
+        int side = (int) Math.max(1, Math.round(Math.sqrt(n / Math.max(1e-9, perCell))));
+        return generate(n, side, side, meanHousehold, seed);
+    }
+
+    // Knuth's product method; household sizes keep the mean small
+    private static int poisson(SplittableRandom rnd, double mean) {
+        if (mean <= 0) return 0;
+        double limit = Math.exp(-mean), prod = rnd.nextDouble();
+        int k = 0;
+        while (prod > limit) {
+            prod *= rnd.nextDouble();
+            k++;
+        }
+        return k;
+    }
+}
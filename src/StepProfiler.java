@@ -0,0 +1,139 @@
+// src/StepProfiler.java
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Per-phase timing of Simulation.step(), switched on with -Dsim.profile=true.
+ *
+ * ENABLED is a static final constant, so with profiling off the JIT folds every
+ * "if (StepProfiler.ENABLED)" in Simulation away and the hot loop pays nothing.
+ * With it on, each step records nanoseconds and bytes allocated (calling thread only)
+ * per phase plus contacts attempted, emits a "sim.Step" JFR event, and the run ends
+ * with runs/&lt;scenario&gt;/profile_seed&lt;seed&gt;.csv next to run_seed&lt;seed&gt;.csv.
+ */
+final class StepProfiler {
+    static final boolean ENABLED = Boolean.getBoolean("sim.profile");
+
+    static final int SNAPSHOT = 0, INFECT = 1, RECOVER = 2, APPLY = 3, TICK = 4, PRINT = 5, RECORD = 6;
+    static final String[] PHASES = { "snapshot", "infect", "recover", "apply", "tick", "print", "record" };
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // per-step rows: step, contacts, then nanos and bytes for each phase
+    private long[][] rows = new long[64][];
+    private int nRows;
+
+    private final long[] nanos = new long[PHASES.length];
+    private final long[] bytes = new long[PHASES.length];
+    private long contacts;
+    private long mark, markBytes, stepStart, runNanos;
+    private StepEvent event;
+
+    /** JFR event, one per step; enable with -XX:StartFlightRecording or a .jfc setting for sim.Step. */
+    @Name("sim.Step")
+    @Label("Simulation Step")
+    @Category("Disease Simulation")
+    static final class StepEvent extends Event {
+        @Label("Step") int step;
+        @Label("Contacts Attempted") long contacts;
+        @Label("Allocated Bytes") long allocatedBytes;
+        @Label("Snapshot") @Timespan long snapshot;
+        @Label("Infect") @Timespan long infect;
+        @Label("Recover") @Timespan long recover;
+        @Label("Apply") @Timespan long apply;
+        @Label("Tick") @Timespan long tick;
+        @Label("Print") @Timespan long print;
+        @Label("Record") @Timespan long record;
+    }
+
+    /** Call at the start of a step. */
+    void begin() {
+        event = new StepEvent();
+        event.begin();
+        Arrays.fill(nanos, 0);
+        Arrays.fill(bytes, 0);
+        contacts = 0;
+        markBytes = THREADS.getCurrentThreadAllocatedBytes();
+        mark = stepStart = System.nanoTime();
+    }
+
+    /** Charge the time since the previous mark to 'phase'. */
+    void lap(int phase) {
+        long now = System.nanoTime();
+        long b = THREADS.getCurrentThreadAllocatedBytes();
+        nanos[phase] += now - mark;
+        bytes[phase] += b - markBytes;
+        mark = now;
+        markBytes = b;
+    }
+
+    void addContacts(long n) {
+        contacts += n;
+    }
+
+    /** Call at the end of a step (after the last lap). */
+    void end(int step) {
+        runNanos += System.nanoTime() - stepStart;
+        long[] row = new long[2 + 2 * PHASES.length];
+        row[0] = step;
+        row[1] = contacts;
+        System.arraycopy(nanos, 0, row, 2, PHASES.length);
+        System.arraycopy(bytes, 0, row, 2 + PHASES.length, PHASES.length);
+        if (nRows == rows.length) rows = Arrays.copyOf(rows, nRows * 2);
+        rows[nRows++] = row;
+
+        long allocated = 0;
+        for (long b : bytes) allocated += b;
+        event.step = step;
+        event.contacts = contacts;
+        event.allocatedBytes = allocated;
+        event.snapshot = nanos[SNAPSHOT];
+        event.infect = nanos[INFECT];
+        event.recover = nanos[RECOVER];
+        event.apply = nanos[APPLY];
+        event.tick = nanos[TICK];
+        event.print = nanos[PRINT];
+        event.record = nanos[RECORD];
+        event.commit();
+    }
+
+    int steps() { return nRows; }
+
+    double stepsPerSecond() { return runNanos == 0 ? 0.0 : nRows / (runNanos / 1e9); }
+
+    long totalContacts() {
+        long c = 0;
+        for (int i = 0; i < nRows; i++) c += rows[i][1];
+        return c;
+    }
+
+    void writeCsv(Path path) throws IOException {
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        try (BufferedWriter w = Files.newBufferedWriter(path)) {
+            StringBuilder header = new StringBuilder("step,contacts");
+            for (String p : PHASES) header.append(',').append(p).append("Ns");
+            for (String p : PHASES) header.append(',').append(p).append("Bytes");
+            w.write(header.append('\n').toString());
+            for (int i = 0; i < nRows; i++) {
+                long[] row = rows[i];
+                StringBuilder line = new StringBuilder();
+                for (int c = 0; c < row.length; c++) {
+                    if (c > 0) line.append(',');
+                    line.append(row[c]);
+                }
+                w.write(line.append('\n').toString());
+            }
+        }
+    }
+}
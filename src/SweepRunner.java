@@ -0,0 +1,359 @@
+// src/SweepRunner.java
+import metrics.MetricsCollector;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Parameter sweep over SimParams with adaptive replication.
+ *
+ * A design (full grid or Latin hypercube) gives the parameter points. Each point gets
+ * replications in fixed-size batches until the 95% CI half-width (RunningStats, as in
+ * Aggregator.printStats) of every targeted output is at or below its target, or the
+ * replication cap is hit. Points with little noise stop after the first batch, so the
+ * compute goes to the points that need it.
+ *
+ * Examples:
+ *   java -cp bin SweepRunner --grid beta=0.05,0.1,0.2 gamma=0.05,0.1 --target peakI=1.0 attackRate=0.02
+ *   java -cp bin SweepRunner --lhs 40 beta=0.02:0.3 contactsPerStep=2:10 --aggregate --threads 0
+ *
+ * With --cache, replications already in the ResultCache are read instead of simulated,
+ * so rerunning a sweep after changing a few points only simulates the new ones.
+ *
+ * Parameters not in the design keep BatchRunner's values. Replication r of a point uses
+ * seed (--seed, default 42) + r. With --threads, the batches of many unconverged points
+ * are in flight at once on the shared pool; each point folds its batches in replication
+ * order and decides on the next one only after folding, and rows are written in point
+ * order, so results don't depend on the thread count.
+ * Output: analysis/sweeps/sweep_summary.csv.
+ */
+public class SweepRunner {
+
+    static final String[] FIELDS = { "populationSize", "initialInfected", "beta", "gamma", "contactsPerStep", "maxSteps" };
+
+    // replication control
+    static int minReps = 10, maxReps = 500, batch = 10;
+    static long baseSeed = 42;
+    static boolean aggregate = false;
+    static String scenario = "baseline";
+    static ResultCache cache = null; // --cache: reuse replications already in runs/.cache
+
+    /** One design point: a value for every field in FIELDS. */
+    static final class Point {
+        final double[] v = new double[FIELDS.length];
+
+        Point() {
+            v[0] = BatchRunner.N; v[1] = BatchRunner.I0; v[2] = BatchRunner.beta;
+            v[3] = BatchRunner.gamma; v[4] = BatchRunner.k; v[5] = BatchRunner.maxSteps;
+        }
+
+        Point copy() {
+            Point p = new Point();
+            System.arraycopy(v, 0, p.v, 0, v.length);
+            return p;
+        }
+
+        SimParams params(long seed) {
+            return new SimParams((int) Math.round(v[0]), (int) Math.round(v[1]), v[2], v[3],
+                                 (int) Math.round(v[4]), (int) Math.round(v[5]), seed);
+        }
+    }
+
+    static int field(String name) {
+        int f = Arrays.asList(FIELDS).indexOf(name);
+        if (f < 0) throw new IllegalArgumentException("unknown SimParams field '" + name + "', expected one of " + Arrays.toString(FIELDS));
+        return f;
+    }
+
+    /** Full factorial design from "field=v1,v2,..." specs. */
+    static List<Point> grid(List<String> specs) {
+        List<Point> points = new ArrayList<>();
+        points.add(new Point());
+        for (String spec : specs) {
+            String[] kv = spec.split("=", 2);
+            int f = field(kv[0]);
+            List<Point> next = new ArrayList<>();
+            for (Point p : points) {
+                for (String val : kv[1].split(",")) {
+                    Point q = p.copy();
+                    q.v[f] = Double.parseDouble(val);
+                    next.add(q);
+                }
+            }
+            points = next;
+        }
+        return points;
+    }
+
+    /**
+     * Latin hypercube with n points from "field=lo:hi" specs: each range is cut into n
+     * equal strata and every stratum is used exactly once per field.
+     */
+    static List<Point> latinHypercube(int n, List<String> specs, long seed) {
+        Random rng = new Random(seed);
+        List<Point> points = new ArrayList<>();
+        for (int i = 0; i < n; i++) points.add(new Point());
+        int[] perm = new int[n];
+        for (String spec : specs) {
+            String[] kv = spec.split("=", 2);
+            int f = field(kv[0]);
+            String[] range = kv[1].split(":");
+            double lo = Double.parseDouble(range[0]), hi = Double.parseDouble(range[1]);
+            for (int i = 0; i < n; i++) perm[i] = i;
+            for (int i = n; i > 1; i--) {
+                int j = rng.nextInt(i);
+                int t = perm[i - 1]; perm[i - 1] = perm[j]; perm[j] = t;
+            }
+            for (int i = 0; i < n; i++) {
+                points.get(i).v[f] = lo + (perm[i] + rng.nextDouble()) / n * (hi - lo);
+            }
+        }
+        return points;
+    }
+
+    /** Run one replication in memory (no files) and summarize it like Aggregator does. */
+    static Aggregator.RunResult replicate(Point point, long seed) throws IOException {
+        SimParams params = point.params(seed);
+        // same engine descriptions as BatchRunner, so both share cached runs
+        String key = (cache != null) ? ResultCache.key(params, scenario, aggregate ? "aggregate" : "agent") : null;
+        MetricsCollector mc = (cache != null) ? cache.get(key) : null;
+        if (mc == null) {
+            mc = new MetricsCollector();
+            SimulationEngine sim = aggregate ? new AggregateSimulation() : new Simulation();
+            sim.setConsole(new PrintStream(OutputStream.nullOutputStream()));
+            sim.setScenarioFolder(scenario);
+            sim.setMetricsCollector(mc);
+            sim.initialize(params);
+            // same stopping rule as run(), without writing output
+            while (sim.getStep() < params.maxSteps && mc.get(MetricsCollector.I, mc.size() - 1) > 0) {
+                sim.step();
+            }
+            if (cache != null) cache.put(key, mc);
+        }
+        Aggregator.RunResult r = new Aggregator.RunResult();
+        for (int row = 0; row < mc.size(); row++) {
+            r.add(mc.get(MetricsCollector.STEP, row), mc.get(MetricsCollector.I, row), mc.get(MetricsCollector.R, row));
+        }
+        return r.finish("seed" + seed, params.populationSize);
+    }
+
+    /** Replication state of one design point. */
+    static final class PointRun {
+        final int index;
+        final Point point;
+        final RunningStats[] stats = new RunningStats[Aggregator.METRICS.length];
+        int reps;                      // replications folded into stats
+        Aggregator.RunResult[] batchResults = new Aggregator.RunResult[0];
+        int pending;                   // replications of the current batch still running
+
+        PointRun(int index, Point point) {
+            this.index = index;
+            this.point = point;
+            for (int m = 0; m < stats.length; m++) stats[m] = new RunningStats();
+        }
+
+        /** Size of the next batch (replications reps .. reps+n), or 0 when the point is finished. */
+        int nextBatch(double[] targets) {
+            if (reps >= maxReps || (reps >= minReps && converged(stats, targets))) return 0;
+            int n = Math.min(batch, maxReps - reps);
+            batchResults = new Aggregator.RunResult[n];
+            pending = n;
+            return n;
+        }
+
+        /** Fold the finished batch in replication order. */
+        void fold() {
+            for (Aggregator.RunResult r : batchResults) {
+                for (int m = 0; m < stats.length; m++) stats[m].add(r.metric(m));
+            }
+            reps += batchResults.length;
+        }
+    }
+
+    static boolean converged(RunningStats[] stats, double[] targets) {
+        for (int m = 0; m < targets.length; m++) {
+            if (!Double.isNaN(targets[m]) && !(stats[m].ci95HalfWidth() <= targets[m])) return false;
+        }
+        return true;
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> gridSpecs = new ArrayList<>(), lhsSpecs = new ArrayList<>(), targetList = new ArrayList<>();
+        int lhsPoints = 0;
+        long designSeed = 1;
+        List<String> current = null;
+        for (int i = 0; i < args.length; i++) {
+            String a = args[i];
+            switch (a) {
+                case "--grid": current = gridSpecs; break;
+                case "--lhs": lhsPoints = Integer.parseInt(args[++i]); current = lhsSpecs; break;
+                case "--target": current = targetList; break;
+                case "--min-reps": minReps = Integer.parseInt(args[++i]); break;
+                case "--max-reps": maxReps = Integer.parseInt(args[++i]); break;
+                case "--batch": batch = Integer.parseInt(args[++i]); break;
+                case "--seed": baseSeed = Long.parseLong(args[++i]); break;
+                case "--design-seed": designSeed = Long.parseLong(args[++i]); break;
+                case "--scenario": scenario = args[++i]; break;
+                case "--aggregate": aggregate = true; break;
+                case "--cache": cache = ResultCache.fromProperties(); break;
+                case "--threads": i++; break; // read by BatchRunner.executorFromArgs
+                case "--virtual": break;
+                default:
+                    if (a.startsWith("--")) throw new IllegalArgumentException("unknown option " + a);
+                    if (current == null) throw new IllegalArgumentException("unexpected argument " + a);
+                    current.add(a);
+            }
+        }
+        Map<String, Double> targetSpecs = new LinkedHashMap<>();
+        for (String t : targetList) {
+            String[] kv = t.split("=", 2);
+            targetSpecs.put(kv[0], Double.parseDouble(kv[1]));
+        }
+        if (targetSpecs.isEmpty()) {
+            targetSpecs.put("peakI", 1.0);
+            targetSpecs.put("attackRate", 0.02);
+        }
+        double[] targets = new double[Aggregator.METRICS.length];
+        Arrays.fill(targets, Double.NaN);
+        for (Map.Entry<String, Double> t : targetSpecs.entrySet()) {
+            int m = Arrays.asList(Aggregator.METRICS).indexOf(t.getKey());
+            if (m < 0) throw new IllegalArgumentException("unknown output '" + t.getKey() + "', expected one of " + Arrays.toString(Aggregator.METRICS));
+            targets[m] = t.getValue();
+        }
+        batch = Math.max(1, batch);
+
+        List<Point> points = lhsPoints > 0 ? latinHypercube(lhsPoints, lhsSpecs, designSeed) : grid(gridSpecs);
+        System.out.printf(Locale.US, "Sweep: %d points, targets %s, reps %d..%d in batches of %d%n",
+                points.size(), targetSpecs, minReps, maxReps, batch);
+
+        ExecutorService pool = BatchRunner.executorFromArgs(args);
+        Path out = Paths.get("analysis", "sweeps", "sweep_summary.csv");
+        Files.createDirectories(out.getParent());
+        long totalReps = 0;
+        try (BufferedWriter w = Files.newBufferedWriter(out)) {
+            w.write(String.join(",", FIELDS) + ",reps,converged");
+            for (String m : Aggregator.METRICS) w.write("," + m + "_mean," + m + "_ci95");
+            w.write("\n");
+
+            if (pool == null) {
+                for (int pi = 0; pi < points.size(); pi++) {
+                    PointRun pr = new PointRun(pi, points.get(pi));
+                    for (int n; (n = pr.nextBatch(targets)) > 0; ) {
+                        for (int j = 0; j < n; j++) pr.batchResults[j] = replicate(pr.point, baseSeed + pr.reps + j);
+                        pr.fold();
+                    }
+                    totalReps += finish(w, pr, points.size(), targets);
+                }
+            } else {
+                int t = Arrays.asList(args).indexOf("--threads");
+                int threads = (t >= 0 && t + 1 < args.length) ? Integer.parseInt(args[t + 1]) : 0;
+                if (threads <= 0) threads = Runtime.getRuntime().availableProcessors();
+                totalReps = runPooled(pool, threads, points, targets, w);
+            }
+        } finally {
+            if (pool != null) pool.shutdownNow();
+        }
+        System.out.println("Sweep complete: " + totalReps + " runs. Wrote " + out);
+    }
+
+    /**
+     * Keep the pool busy with the batches of several points: a new point is started while
+     * fewer than 2 * threads replications are in flight, and every finished batch is
+     * folded and followed by the point's next batch right away. Finished points are
+     * written in point order. @return the total number of replications
+     */
+    private static long runPooled(ExecutorService pool, int threads, List<Point> points, double[] targets,
+                                  BufferedWriter w) throws Exception {
+        CompletionService<int[]> done = new ExecutorCompletionService<>(pool);
+        PointRun[] runs = new PointRun[points.size()];
+        int started = 0, written = 0, inFlight = 0;
+        long totalReps = 0;
+        while (written < points.size()) {
+            while (started < points.size() && inFlight < 2 * threads) {
+                PointRun pr = new PointRun(started, points.get(started));
+                runs[started++] = pr;
+                inFlight += submitBatch(done, pr, targets);
+            }
+            while (written < points.size() && runs[written] != null && runs[written].pending == 0
+                   && runs[written].batchResults == null) {
+                totalReps += finish(w, runs[written++], points.size(), targets);
+            }
+            if (inFlight == 0) continue;
+
+            int[] id = done.take().get(); // {point, slot in batch}; rethrows a failed replication
+            inFlight--;
+            PointRun pr = runs[id[0]];
+            if (--pr.pending == 0) {
+                pr.fold();
+                inFlight += submitBatch(done, pr, targets);
+            }
+        }
+        return totalReps;
+    }
+
+    // submit the point's next batch; marks it finished (batchResults = null) if there is none
+    private static int submitBatch(CompletionService<int[]> done, PointRun pr, double[] targets) {
+        int n = pr.nextBatch(targets);
+        if (n == 0) {
+            pr.batchResults = null;
+            return 0;
+        }
+        Aggregator.RunResult[] results = pr.batchResults;
+        for (int j = 0; j < n; j++) {
+            int slot = j;
+            long seed = baseSeed + pr.reps + j;
+            done.submit(() -> {
+                results[slot] = replicate(pr.point, seed);
+                return new int[] { pr.index, slot };
+            });
+        }
+        return n;
+    }
+
+    // write a finished point's row and progress line; returns its replication count
+    private static int finish(BufferedWriter w, PointRun pr, int points, double[] targets) throws IOException {
+        boolean ok = converged(pr.stats, targets);
+        writeRow(w, pr.point, pr.reps, ok, pr.stats);
+        System.out.printf(Locale.US, "point %d/%d: %s reps=%d %s%n", pr.index + 1, points,
+                describe(pr.point), pr.reps, ok ? "converged" : "hit max-reps");
+        return pr.reps;
+    }
+
+    private static String describe(Point p) {
+        StringBuilder sb = new StringBuilder();
+        for (int f = 0; f < FIELDS.length; f++) {
+            sb.append(FIELDS[f]).append('=').append(format(p.v[f], f)).append(' ');
+        }
+        return sb.toString().trim();
+    }
+
+    // integer fields print as integers, the rates with 4 decimals
+    private static String format(double v, int field) {
+        return (field == 2 || field == 3) ? String.format(Locale.US, "%.4f", v) : Long.toString(Math.round(v));
+    }
+
+    private static void writeRow(BufferedWriter w, Point p, int reps, boolean ok, RunningStats[] stats) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int f = 0; f < FIELDS.length; f++) sb.append(format(p.v[f], f)).append(',');
+        sb.append(reps).append(',').append(ok);
+        for (RunningStats st : stats) {
+            sb.append(String.format(Locale.US, ",%.4f,%.4f", st.mean(), st.ci95HalfWidth()));
+        }
+        w.write(sb.append('\n').toString());
+    }
+}
@@ -0,0 +1,129 @@
+// src/TimingWheel.java
+import java.util.Arrays;
+
+/**
+ * Calendar queue of pending per-person events keyed by step.
+ *
+ * Events due within the next 'slots' steps go straight into the slot for (step mod slots);
+ * later ones wait in an overflow list that is re-sorted into the wheel once per
+ * revolution. Scheduling is O(1) and draining a step costs O(events due), however
+ * large the population is.
+ */
+final class TimingWheel {
+    private final int mask;
+    private final int[][] slots;
+    private final int[] slotSize;
+    private int now;              // step the next drain() is for
+
+    // events beyond the horizon: parallel id / due arrays
+    private int[] farIds = new int[16];
+    private int[] farDue = new int[16];
+    private int farCount;
+
+    /** @param horizon steps covered without overflow (rounded up to a power of two) */
+    TimingWheel(int horizon) {
+        int n = Integer.highestOneBit(Math.max(2, horizon - 1)) << 1;
+        this.mask = n - 1;
+        this.slots = new int[n][];
+        this.slotSize = new int[n];
+        for (int i = 0; i < n; i++) slots[i] = new int[8];
+    }
+
+    /** Schedule 'id' for step 'due' (must be &gt;= the step of the next drain()). */
+    void schedule(int id, int due) {
+        if (due < now) throw new IllegalArgumentException("step " + due + " already drained (now " + now + ")");
+        if (due - now > mask) {
+            if (farCount == farIds.length) {
+                farIds = Arrays.copyOf(farIds, farCount * 2);
+                farDue = Arrays.copyOf(farDue, farCount * 2);
+            }
+            farIds[farCount] = id;
+            farDue[farCount++] = due;
+            return;
+        }
+        int s = due & mask;
+        if (slotSize[s] == slots[s].length) slots[s] = Arrays.copyOf(slots[s], slotSize[s] * 2);
+        slots[s][slotSize[s]++] = id;
+    }
+
+    /**
+     * Remove the events due at 'step' (steps must be drained in order, none skipped),
+     * sorted by id, into dest. @return how many; dest must hold pending(step) entries
+     */
+    int drain(int step, int[] dest) {
+        if (step != now) throw new IllegalStateException("expected step " + now + ", got " + step);
+        if ((step & mask) == 0 && farCount > 0) pullFar();
+        int s = step & mask;
+        int n = slotSize[s];
+        System.arraycopy(slots[s], 0, dest, 0, n);
+        Arrays.sort(dest, 0, n); // same order as the classic path's sorted snapshot
+        slotSize[s] = 0;
+        now++;
+        return n;
+    }
+
+    /** @return number of events due at the next drain() */
+    int dueNext() {
+        if ((now & mask) == 0 && farCount > 0) pullFar();
+        return slotSize[now & mask];
+    }
+
+    // once per revolution: move overflow events that are now within the horizon
+    private void pullFar() {
+        int keep = 0;
+        for (int i = 0; i < farCount; i++) {
+            int id = farIds[i], due = farDue[i];
+            if (due - now <= mask) {
+                int s = due & mask;
+                if (slotSize[s] == slots[s].length) slots[s] = Arrays.copyOf(slots[s], slotSize[s] * 2);
+                slots[s][slotSize[s]++] = id;
+            } else {
+                farIds[keep] = id;
+                farDue[keep++] = due;
+            }
+        }
+        farCount = keep;
+    }
+
+    /** Pending events as (id, due) pairs, in no particular order (for checkpoints). */
+    int[] pending() {
+        int n = farCount;
+        for (int s = 0; s <= mask; s++) n += slotSize[s];
+        int[] out = new int[2 * n];
+        int k = 0;
+        for (int s = 0; s <= mask; s++) {
+            int due = now + ((s - now) & mask); // the one step in [now, now + mask] that maps to s
+            for (int i = 0; i < slotSize[s]; i++) {
+                out[k++] = slots[s][i];
+                out[k++] = due;
+            }
+        }
+        for (int i = 0; i < farCount; i++) {
+            out[k++] = farIds[i];
+            out[k++] = farDue[i];
+        }
+        return out;
+    }
+
+    /** Wheel whose next drain() is for step 'now', holding the pairs from pending(). */
+    static TimingWheel restore(int horizon, int now, int[] pending) {
+        TimingWheel w = new TimingWheel(horizon);
+        w.now = now;
+        for (int i = 0; i < pending.length; i += 2) w.schedule(pending[i], pending[i + 1]);
+        return w;
+    }
+
+    /** Independent copy (for Simulation.fork). */
+    TimingWheel copy() {
+        TimingWheel w = new TimingWheel(slots.length);
+        for (int i = 0; i < slots.length; i++) {
+            w.slots[i] = slots[i].clone();
+            w.slotSize[i] = slotSize[i];
+        }
+        w.now = now;
+        w.farIds = farIds.clone();
+        w.farDue = farDue.clone();
+        w.farCount = farCount;
+        return w;
+    }
+}
@@ -0,0 +1,21 @@
+// src/UniformMixing.java
+import java.util.random.RandomGenerator;
+
+/** Homogeneous mixing: every contact is a uniformly random other person (the classic model). */
+public class UniformMixing implements ContactSampler {
+    private final int n;
+
+    public UniformMixing(int populationSize) {
+        this.n = populationSize;
+    }
+
+    @Override
+    public int sample(int self, RandomGenerator rng) {
+        // pick a random index; if it equals self, pick again (few tries; good enough for classroom scale)
+        int p;
+        do {
+            p = rng.nextInt(n);
+        } while (p == self && n > 1);
+        return p;
+    }
+}
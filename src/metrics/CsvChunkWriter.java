@@ -0,0 +1,130 @@
+package metrics;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Background CSV writer for MetricsCollector.
+ * Filled column chunks are handed over through a small bounded queue and recycled once
+ * written, so memory stays at two chunks however long the run is and no garbage is made.
+ */
+class CsvChunkWriter {
+    /** One block of rows in column form. */
+    static final class Chunk {
+        final int[][] cols;
+        int rows;
+        Chunk(int ncols, int capacity) { cols = new int[ncols][capacity]; }
+    }
+
+    private static final Chunk DONE = new Chunk(0, 0);
+
+    private final BlockingQueue<Chunk> full = new ArrayBlockingQueue<>(2);
+    private final BlockingQueue<Chunk> free = new ArrayBlockingQueue<>(2);
+    private final BufferedWriter out;
+    private final Thread thread;
+    private final int ncols;
+    private volatile IOException failure;
+
+    CsvChunkWriter(Path path, List<String> header, boolean writeHeader, int chunkRows) throws IOException {
+        this.ncols = header.size();
+        this.out = Files.newBufferedWriter(path);
+        if (writeHeader) out.write(String.join(",", header) + "\n");
+        free.add(new Chunk(ncols, chunkRows));
+        free.add(new Chunk(ncols, chunkRows));
+        this.thread = new Thread(this::loop, "metrics-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /** Take an empty chunk to fill (blocks only if the writer is two chunks behind). */
+    Chunk take() {
+        try {
+            return free.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted waiting for metrics writer", e);
+        }
+    }
+
+    /** Queue a filled chunk for writing. */
+    void submit(Chunk c) {
+        try {
+            full.put(c);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted waiting for metrics writer", e);
+        }
+    }
+
+    /** Write everything queued so far, close the file and stop the thread. */
+    void close() throws IOException {
+        submit(DONE);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            if (failure == null) failure = e;
+        }
+        if (failure != null) throw failure;
+    }
+
+    private void loop() {
+        char[] buf = new char[12 * ncols + 1];
+        while (true) {
+            Chunk c;
+            try {
+                c = full.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (c == DONE) return;
+            if (failure == null) {
+                try {
+                    writeRows(out, c.cols, ncols, 0, c.rows, buf);
+                } catch (IOException e) {
+                    failure = e; // keep draining so the simulation never blocks
+                }
+            }
+            c.rows = 0;
+            free.add(c);
+        }
+    }
+
+    /** Format rows [from, to) as "a,b,c\n" lines without creating Strings. */
+    static void writeRows(Writer w, int[][] cols, int ncols, int from, int to, char[] buf) throws IOException {
+        for (int row = from; row < to; row++) {
+            int pos = 0;
+            for (int c = 0; c < ncols; c++) {
+                if (c > 0) buf[pos++] = ',';
+                pos = putInt(buf, pos, cols[c][row]);
+            }
+            buf[pos++] = '\n';
+            w.write(buf, 0, pos);
+        }
+    }
+
+    private static int putInt(char[] buf, int pos, int v) {
+        long x = v;
+        if (x < 0) { buf[pos++] = '-'; x = -x; }
+        int start = pos;
+        do {
+            buf[pos++] = (char) ('0' + (x % 10));
+            x /= 10;
+        } while (x != 0);
+        // digits came out least-significant first
+        for (int i = start, j = pos - 1; i < j; i++, j--) {
+            char t = buf[i]; buf[i] = buf[j]; buf[j] = t;
+        }
+        return pos;
+    }
+}
@@ -1,38 +1,199 @@
 package metrics;
 
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
-/** Collects S/I/R counts per step for plotting/screenshots. */
+/**
+ * Collects S/I/R counts per step for plotting/screenshots.
+ *
+ * Values live in growable int columns (step, S, I, R, then any extra columns added with
+ * addColumn), so recording a step allocates nothing. With startStreaming() rows are
+ * flushed to disk in fixed-size chunks by a background thread while the run goes on,
+ * keeping memory bounded for very long runs.
+ */
 public class MetricsCollector {
-    public static final class Row {
-        public final int step, S, I, R;
-        public Row(int step, int s, int i, int r) { this.step = step; this.S = s; this.I = i; this.R = r; }
-    }
+    /** Column indexes of the built-in columns. */
+    public static final int STEP = 0, S = 1, I = 2, R = 3;
 
-    private final List<Row> rows = new ArrayList<>();
+    private final List<String> names = new ArrayList<>(List.of("step", "S", "I", "R"));
+    private int[][] cols = new int[4][64];
+    private int rows;   // rows currently held in memory
+    private int total;  // rows recorded since the last clear()
     private boolean includeHeader = true;
 
-    /** Record counts for the given step. */
+    // streaming mode (null when everything is kept in memory)
+    private CsvChunkWriter writer;
+    private CsvChunkWriter.Chunk chunk;
+    private Path streamPath;
+
+    /**
+     * Add an extra per-step column (e.g. "newInfections"); call before the first record().
+     * @return the column index to pass to set()
+     */
+    public int addColumn(String name) {
+        if (total > 0 || writer != null) throw new IllegalStateException("add columns before recording or streaming rows");
+        int idx = names.indexOf(name);
+        if (idx >= 0) return idx;
+        names.add(name);
+        cols = Arrays.copyOf(cols, names.size());
+        cols[names.size() - 1] = new int[cols[0].length];
+        return names.size() - 1;
+    }
+
+    /** Record counts for the given step. Extra columns start at 0 until set(). */
     public void record(int step, int s, int i, int r) {
-        rows.add(new Row(step, s, i, r));
+        if (writer != null) {
+            if (chunk.rows == chunk.cols[0].length) {
+                writer.submit(chunk);
+                chunk = writer.take();
+            }
+            int row = chunk.rows++;
+            int[][] c = chunk.cols;
+            c[STEP][row] = step; c[S][row] = s; c[I][row] = i; c[R][row] = r;
+            for (int k = 4; k < c.length; k++) c[k][row] = 0;
+        } else {
+            if (rows == cols[0].length) {
+                for (int k = 0; k < cols.length; k++) cols[k] = Arrays.copyOf(cols[k], rows * 2);
+            }
+            cols[STEP][rows] = step; cols[S][rows] = s; cols[I][rows] = i; cols[R][rows] = r;
+            for (int k = 4; k < cols.length; k++) cols[k][rows] = 0;
+            rows++;
+        }
+        total++;
+    }
+
+    /**
+     * Record a whole row at once, indexed like the columns (step, S, I, R, extras), e.g. one
+     * count per compartment. Allocates nothing, however many columns there are.
+     */
+    public void record(int[] row) {
+        record(row[STEP], row[S], row[I], row[R]);
+        for (int k = 4; k < names.size(); k++) set(k, row[k]);
+    }
+
+    /** Set an extra column's value on the most recently recorded row. */
+    public void set(int column, int value) {
+        if (writer != null) chunk.cols[column][chunk.rows - 1] = value;
+        else cols[column][rows - 1] = value;
+    }
+
+    /** Value of a column at a row (in-memory mode only). */
+    public int get(int column, int row) {
+        if (writer != null || streamPath != null) throw new IllegalStateException("rows were streamed to " + streamPath);
+        if (row < 0 || row >= rows) throw new IndexOutOfBoundsException("row " + row + ", size " + rows);
+        return cols[column][row];
+    }
+
+    /**
+     * Start writing rows to 'path' in chunks of 'chunkRows' on a background thread.
+     * Rows already recorded are written first. Finish with writeCsv() or finish().
+     */
+    public void startStreaming(Path path, int chunkRows) throws IOException {
+        if (writer != null) throw new IllegalStateException("already streaming to " + streamPath);
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        writer = new CsvChunkWriter(path, names, includeHeader, Math.max(1, chunkRows));
+        streamPath = path;
+        chunk = writer.take();
+        // hand over anything recorded before streaming started
+        int buffered = rows;
+        int[][] old = cols;
+        rows = 0;
+        total -= buffered;
+        for (int row = 0; row < buffered; row++) {
+            record(old[STEP][row], old[S][row], old[I][row], old[R][row]);
+            for (int k = 4; k < old.length; k++) set(k, old[k][row]);
+        }
     }
 
-    /** Write a simple CSV: step,S,I,R */
+    /** Flush the last chunk and wait for the background writer (no-op if not streaming). */
+    public void finish() throws IOException {
+        if (writer == null) return;
+        CsvChunkWriter w = writer;
+        writer = null;
+        if (chunk.rows > 0) w.submit(chunk);
+        chunk = null;
+        w.close();
+    }
+
+    /**
+     * Write a simple CSV: step,S,I,R (plus any extra columns).
+     * When streaming, this finishes the stream and copies it if 'path' is a different file.
+     */
     public void writeCsv(Path path) throws IOException {
+        if (streamPath != null) {
+            finish();
+            if (!Files.exists(path) || !Files.isSameFile(streamPath, path)) {
+                Files.copy(streamPath, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return;
+        }
         try (BufferedWriter w = Files.newBufferedWriter(path)) {
-            if (includeHeader) w.write("step,S,I,R\n");
-            for (Row r : rows) {
-                w.write(r.step + "," + r.S + "," + r.I + "," + r.R + "\n");
+            if (includeHeader) w.write(String.join(",", names) + "\n");
+            CsvChunkWriter.writeRows(w, cols, cols.length, 0, rows, new char[12 * cols.length + 1]);
+        }
+    }
+
+    /** Read a CSV written by writeCsv (with header) back into a new in-memory collector. */
+    public static MetricsCollector readCsv(Path path) throws IOException {
+        MetricsCollector mc = new MetricsCollector();
+        try (BufferedReader r = Files.newBufferedReader(path)) {
+            String header = r.readLine();
+            if (header == null) throw new IOException("empty metrics file " + path);
+            String[] cols = header.split(",");
+            if (cols.length < 4) throw new IOException("not a step,S,I,R file: " + path);
+            for (int k = 4; k < cols.length; k++) mc.addColumn(cols[k]);
+            int[] row = new int[cols.length];
+            for (String line; (line = r.readLine()) != null; ) {
+                if (line.isEmpty()) continue;
+                int k = 0;
+                for (int start = 0; k < row.length; k++) {
+                    int end = line.indexOf(',', start);
+                    if (end < 0) end = line.length();
+                    row[k] = Integer.parseInt(line, start, end, 10);
+                    start = end + 1;
+                }
+                mc.record(row);
             }
         }
+        return mc;
+    }
+
+    /** Independent copy of the columns and rows recorded so far (in-memory mode only). */
+    public MetricsCollector copy() {
+        if (writer != null || streamPath != null) throw new IllegalStateException("rows were streamed to " + streamPath);
+        MetricsCollector c = new MetricsCollector();
+        c.names.clear();
+        c.names.addAll(names);
+        c.cols = new int[cols.length][];
+        for (int k = 0; k < cols.length; k++) c.cols[k] = cols[k].clone();
+        c.rows = rows;
+        c.total = total;
+        c.includeHeader = includeHeader;
+        return c;
+    }
+
+    public int size() { return total; }
+
+    public int columnCount() { return names.size(); }
+
+    public List<String> columnNames() { return List.copyOf(names); }
+
+    /** Forget all rows (and stop streaming, if active). Extra columns are kept. */
+    public void clear() {
+        if (writer != null) {
+            try { finish(); } catch (IOException ignored) { }
+        }
+        streamPath = null;
+        rows = 0;
+        total = 0;
     }
 
-    public int size() { return rows.size(); }
-    public void clear() { rows.clear(); }
     public void setIncludeHeader(boolean include) { this.includeHeader = include; }
 }
@@ -0,0 +1,284 @@
+package metrics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compact binary store for run series: one append-only file per scenario (runs.bin)
+ * plus a fixed-width seed index next to it (runs.idx).
+ *
+ * Record layout (big-endian):
+ *   int magic 'RUN1', long seed, int rows, int ncols, short nameBytes, column names
+ *   (comma separated UTF-8), int payloadBytes, payload.
+ * The payload is row-major; each value is stored as the zig-zag varint of its delta from
+ * the same column in the previous row, so a typical step,S,I,R row takes 4-6 bytes.
+ * Index entries are (long seed, long recordOffset); when a seed is appended twice the
+ * later entry wins.
+ *
+ * Appends take a JVM-wide lock plus a file lock, so parallel jobs and several
+ * processes can share one archive. A run only exists once its index entry does: the
+ * record is forced to disk before the entry is written, and each append first cuts the
+ * data file back to the end of the last indexed record, so a writer killed mid-append
+ * leaves nothing a reader (or the next append) would pick up.
+ */
+public final class RunArchive {
+    public static final String DATA_FILE = "runs.bin", INDEX_FILE = "runs.idx";
+    private static final int MAGIC = 0x52554E31; // "RUN1"
+    private static final int HEADER = 4 + 8 + 4 + 4 + 2; // up to the column names
+
+    private static final Map<Path, Object> LOCKS = new ConcurrentHashMap<>();
+
+    private RunArchive() {}
+
+    /** Append every in-memory row of 'mc' as the run for 'seed' to dir/runs.bin. */
+    public static void append(Path dir, long seed, MetricsCollector mc) throws IOException {
+        Files.createDirectories(dir);
+        byte[] record = encode(seed, mc);
+        Path data = dir.resolve(DATA_FILE).toAbsolutePath();
+        synchronized (LOCKS.computeIfAbsent(data, p -> new Object())) {
+            Path index = dir.resolve(INDEX_FILE);
+            try (FileChannel dch = FileChannel.open(data, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                                    StandardOpenOption.WRITE);
+                 FileChannel ich = FileChannel.open(index, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                                    StandardOpenOption.WRITE)) {
+                dch.lock(); // released when dch closes
+                // decided under the lock: another process may have just created the empty index
+                if (ich.size() == 0 && dch.size() > 0) reindex(dch, ich);
+                long offset = committedEnd(dch, ich);
+                dch.truncate(offset); // drop a torn or unindexed record left by a killed writer
+                writeFully(dch, ByteBuffer.wrap(record), offset);
+                dch.force(false);
+                ByteBuffer entry = ByteBuffer.allocate(16).putLong(seed).putLong(offset);
+                entry.flip();
+                writeFully(ich, entry, ich.size());
+                ich.force(false);
+            }
+        }
+    }
+
+    // end of the last indexed record; also cuts a torn trailing index entry
+    private static long committedEnd(FileChannel dch, FileChannel ich) throws IOException {
+        long entries = ich.size() / 16;
+        ich.truncate(entries * 16);
+        long end = 0;
+        ByteBuffer e = ByteBuffer.allocate(16);
+        for (long i = entries - 1; i >= 0; i--) {
+            e.clear();
+            readFully(ich, e, i * 16);
+            long len = recordLength(dch, e.getLong(8), dch.size());
+            if (len >= 0) {
+                end = e.getLong(8) + len;
+                break;
+            }
+            ich.truncate(i * 16); // entry points past the data (data file replaced or cut)
+        }
+        return end;
+    }
+
+    // archive written without an index: index every complete record
+    private static void reindex(FileChannel dch, FileChannel ich) throws IOException {
+        long size = dch.size(), off = 0, len;
+        ich.truncate(0);
+        ByteBuffer head = ByteBuffer.allocate(12);
+        while ((len = recordLength(dch, off, size)) >= 0) {
+            head.clear();
+            readFully(dch, head, off);
+            ByteBuffer entry = ByteBuffer.allocate(16).putLong(head.getLong(4)).putLong(off);
+            entry.flip();
+            writeFully(ich, entry, ich.size());
+            off += len;
+        }
+    }
+
+    /** Length of the record at 'off', or -1 if there is no complete record there. */
+    static long recordLength(FileChannel ch, long off, long size) throws IOException {
+        if (off < 0 || off + HEADER > size) return -1;
+        ByteBuffer head = ByteBuffer.allocate(HEADER);
+        readFully(ch, head, off);
+        if (head.getInt(0) != MAGIC) return -1;
+        int nameBytes = head.getShort(20) & 0xFFFF;
+        if (off + HEADER + nameBytes + 4 > size) return -1;
+        ByteBuffer len = ByteBuffer.allocate(4);
+        readFully(ch, len, off + HEADER + nameBytes);
+        long total = HEADER + nameBytes + 4L + len.getInt(0);
+        return (len.getInt(0) < 0 || off + total > size) ? -1 : total;
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer b, long pos) throws IOException {
+        while (b.hasRemaining()) {
+            int n = ch.read(b, pos);
+            if (n < 0) throw new IOException("unexpected end of archive");
+            pos += n;
+        }
+        b.flip();
+    }
+
+    private static byte[] encode(long seed, MetricsCollector mc) {
+        int rows = mc.size(), ncols = mc.columnCount();
+        byte[] names = String.join(",", mc.columnNames()).getBytes(StandardCharsets.UTF_8);
+        ByteBuffer payload = ByteBuffer.allocate(Math.max(16, rows * ncols * 5));
+        int[] prev = new int[ncols];
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < ncols; c++) {
+                int v = mc.get(c, r);
+                putVarint(payload, (v - prev[c]) << 1 ^ (v - prev[c]) >> 31);
+                prev[c] = v;
+            }
+        }
+        payload.flip();
+        ByteBuffer out = ByteBuffer.allocate(4 + 8 + 4 + 4 + 2 + names.length + 4 + payload.remaining());
+        out.putInt(MAGIC).putLong(seed).putInt(rows).putInt(ncols)
+           .putShort((short) names.length).put(names)
+           .putInt(payload.remaining()).put(payload);
+        return out.array();
+    }
+
+    private static void putVarint(ByteBuffer b, int v) {
+        while ((v & ~0x7F) != 0) {
+            b.put((byte) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        b.put((byte) v);
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer b, long pos) throws IOException {
+        while (b.hasRemaining()) pos += ch.write(b, pos);
+    }
+
+    // ---------------------------------------------------------------- reading
+
+    /** Row-by-row decoder over one record; reuses the same int[] for every row. */
+    public static final class Cursor {
+        private final ByteBuffer buf;
+        private final int end;
+        private final int[] row;
+        private final String[] names;
+        private final long seed;
+        private final int rows;
+        private int read;
+
+        private Cursor(ByteBuffer buf, int offset) {
+            this.buf = buf.duplicate().order(ByteOrder.BIG_ENDIAN);
+            this.buf.position(offset);
+            if (this.buf.getInt() != MAGIC) throw new IllegalStateException("bad run record at " + offset);
+            this.seed = this.buf.getLong();
+            this.rows = this.buf.getInt();
+            int ncols = this.buf.getInt();
+            byte[] nameBytes = new byte[this.buf.getShort() & 0xFFFF];
+            this.buf.get(nameBytes);
+            this.names = new String(nameBytes, StandardCharsets.UTF_8).split(",");
+            int payload = this.buf.getInt();
+            this.end = this.buf.position() + payload;
+            this.row = new int[ncols];
+        }
+
+        public long seed() { return seed; }
+        public int rows() { return rows; }
+        public String[] columnNames() { return names.clone(); }
+
+        /** Decode the next row into values(). @return false after the last row */
+        public boolean next() {
+            if (read == rows) return false;
+            for (int c = 0; c < row.length; c++) {
+                int z = getVarint();
+                row[c] += (z >>> 1) ^ -(z & 1);
+            }
+            read++;
+            return true;
+        }
+
+        /** Current row, indexed like MetricsCollector's columns (STEP, S, I, R, extras). */
+        public int[] values() { return row; }
+
+        int endOffset() { return end; }
+
+        private int getVarint() {
+            int v = 0, shift = 0;
+            byte b;
+            do {
+                b = buf.get();
+                v |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return v;
+        }
+    }
+
+    /**
+     * Read-only view of an archive: memory-maps runs.bin and the seed index.
+     * Files larger than 2 GB are mapped one record at a time.
+     */
+    public static final class Reader implements AutoCloseable {
+        private final FileChannel ch;
+        private final MappedByteBuffer whole; // null if the file is too large for one mapping
+        private final Map<Long, Long> offsets = new LinkedHashMap<>();
+
+        public Reader(Path dir) throws IOException {
+            Path data = dir.resolve(DATA_FILE);
+            this.ch = FileChannel.open(data, StandardOpenOption.READ);
+            long size = ch.size();
+            this.whole = (size <= Integer.MAX_VALUE) ? ch.map(FileChannel.MapMode.READ_ONLY, 0, size) : null;
+
+            Path idx = dir.resolve(INDEX_FILE);
+            if (Files.exists(idx)) {
+                try (FileChannel ich = FileChannel.open(idx, StandardOpenOption.READ)) {
+                    long entries = ich.size() / 16;
+                    MappedByteBuffer ib = ich.map(FileChannel.MapMode.READ_ONLY, 0, entries * 16);
+                    for (long e = 0; e < entries; e++) {
+                        long seed = ib.getLong();
+                        long off = ib.getLong();
+                        if (recordLength(ch, off, size) >= 0) offsets.put(seed, off);
+                    }
+                }
+            } else {
+                rebuildIndex(size);
+            }
+        }
+
+        // no index file: walk the complete records (each one is length-prefixed)
+        private void rebuildIndex(long size) throws IOException {
+            long off = 0, len;
+            ByteBuffer head = ByteBuffer.allocate(12);
+            while ((len = recordLength(ch, off, size)) >= 0) {
+                head.clear();
+                readFully(ch, head, off);
+                offsets.put(head.getLong(4), off);
+                off += len;
+            }
+        }
+
+        /** Seeds in the archive (latest record per seed), in first-appended order. */
+        public Iterable<Long> seeds() { return offsets.keySet(); }
+
+        public boolean contains(long seed) { return offsets.containsKey(seed); }
+
+        /** Open a row cursor over the run for 'seed'. */
+        public Cursor open(long seed) {
+            Long off = offsets.get(seed);
+            if (off == null) throw new IllegalArgumentException("no run for seed " + seed);
+            if (whole != null) return new Cursor(whole, (int) (long) off);
+            try {
+                long recordLen = recordLength(ch, off, ch.size());
+                return new Cursor(ch.map(FileChannel.MapMode.READ_ONLY, off, recordLen), 0);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            ch.close();
+        }
+    }
+}